@@ -0,0 +1,21 @@
+package org.liicornell.cfr.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with JMH's command line, adding the GC profiler so that allocation per operation
+ * (<code>gc.alloc.rate.norm</code>) is reported next to ops/s. The forked JVMs inherit this JVM's arguments, including
+ * <code>-Dcornell.datasets.dir</code>.
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws Exception {
+		List<String> options = new ArrayList<String>(Arrays.asList(args));
+		if (!options.contains("-prof")) {
+			options.add("-prof");
+			options.add("gc");
+		}
+		org.openjdk.jmh.Main.main(options.toArray(new String[options.size()]));
+	}
+}
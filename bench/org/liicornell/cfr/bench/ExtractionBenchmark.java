@@ -0,0 +1,75 @@
+package org.liicornell.cfr.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.liicornell.cfr.cache.SentenceCache;
+import org.liicornell.cfr.corenlp.StanfordTripleGenerator;
+import org.liicornell.cfr.opennlp.OpenNLPTripleGenerator;
+import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleSink;
+import org.liicornell.cfr.runner.SentenceTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing one sentence of the sample and extracting its triples, end to end. Needs the models, so run with
+ * <code>-Dcornell.datasets.dir</code> as for the Runner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(jvmArgsAppend = { "-Xms3072M", "-Xmx3072M" })
+public class ExtractionBenchmark {
+	@Param({ "opennlp", "stanford" })
+	public String parser;
+
+	private final CountingSink sink = new CountingSink();
+	private List<SentenceTask> sentences;
+	private int next;
+
+	@Setup
+	public void setup() {
+		// measure the parsers, not the cache
+		SentenceCache.set(null);
+		sentences = new ArrayList<SentenceTask>();
+		for (String block : Samples.blocks()) {
+			if (parser.equals("stanford")) {
+				sentences.addAll(StanfordTripleGenerator.split(sink, block));
+			} else {
+				sentences.addAll(OpenNLPTripleGenerator.split(sink, block));
+			}
+		}
+	}
+
+	@Benchmark
+	public int sentence() {
+		SentenceTask sentence = sentences.get(next);
+		next = (next + 1) % sentences.size();
+		sentence.run();
+		return sink.count;
+	}
+
+	private static class CountingSink implements TripleSink {
+		int count;
+
+		@Override
+		public void add(Triple triple) {
+			count++;
+		}
+
+		@Override
+		public void addAll(Collection<Triple> triples) {
+			count += triples.size();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.liicornell.cfr.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.liicornell.cfr.preprocessor.Preprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cleaning one block of CFR text: tags, numbers, parentheticals and agency names.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PreprocessorBenchmark {
+	private List<String> blocks;
+	private int next;
+
+	@Setup
+	public void setup() {
+		blocks = Samples.blocks();
+		Preprocessor.defaultGazetteer();
+	}
+
+	@Benchmark
+	public String preprocessText() {
+		String block = blocks.get(next);
+		next = (next + 1) % blocks.size();
+		return Preprocessor.preprocessText(block);
+	}
+
+	@Benchmark
+	public void preprocessSample(Blackhole blackhole) {
+		for (String block : blocks) {
+			blackhole.consume(Preprocessor.preprocessText(block));
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package org.liicornell.cfr.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.liicornell.cfr.rdf.CompactTripleStore;
+import org.liicornell.cfr.rdf.RDFGenerator;
+import org.liicornell.cfr.rdf.Triple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building the Jena model for a file's worth of triples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RDFGeneratorBenchmark {
+	@Param({ "1000", "10000" })
+	public int triples;
+
+	private CompactTripleStore store;
+
+	@Setup
+	public void setup() {
+		store = new CompactTripleStore();
+		for (Triple t : Samples.triples(triples)) {
+			store.add(t);
+		}
+	}
+
+	@Benchmark
+	public RDFGenerator buildModel() {
+		RDFGenerator generator = new RDFGenerator();
+		generator.buildModel(store);
+		return generator;
+	}
+}
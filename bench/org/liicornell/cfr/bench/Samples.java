@@ -0,0 +1,80 @@
+package org.liicornell.cfr.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.liicornell.cfr.rdf.Triple;
+
+/**
+ * A fixed sample of CFR text, one <code>text</code> element per line, so that every benchmark run sees the same input.
+ */
+public class Samples {
+	private static List<String> blocks;
+
+	/**
+	 * @return the raw blocks of text in the sample
+	 */
+	public static synchronized List<String> blocks() {
+		if (blocks == null) {
+			blocks = new ArrayList<String>();
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(
+						Samples.class.getResourceAsStream("cfr-sample.txt"), "UTF-8"));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						if (!line.trim().isEmpty())
+							blocks.add(line);
+					}
+				} finally {
+					reader.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read the CFR sample", e);
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * @return the words of the sample, as they appear in the text
+	 */
+	public static List<String> words() {
+		List<String> words = new ArrayList<String>();
+		for (String block : blocks()) {
+			for (String word : block.replaceAll("<[^>]*>", " ").split("\\s+")) {
+				if (!word.isEmpty())
+					words.add(word);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Triples shaped like the extractors' output, made from neighbouring words of the sample.
+	 * @param count how many triples to make
+	 */
+	public static List<Triple> triples(int count) {
+		List<String> words = words();
+		List<Triple> triples = new ArrayList<Triple>(count);
+		for (int i = 0; triples.size() < count; i++) {
+			String a = words.get(i % words.size());
+			String b = words.get((i * 7 + 1) % words.size());
+			String c = words.get((i * 13 + 2) % words.size());
+			switch (i % 3) {
+			case 0:
+				triples.add(Triple.narrower(a, b + ' ' + a));
+				break;
+			case 1:
+				triples.add(Triple.related(a, c));
+				break;
+			default:
+				triples.add(Triple.lii(a, c, "shall " + b));
+			}
+		}
+		return triples;
+	}
+}
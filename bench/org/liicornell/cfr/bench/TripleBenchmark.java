@@ -0,0 +1,60 @@
+package org.liicornell.cfr.bench;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.liicornell.cfr.rdf.Triple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Making, inverting and de-duplicating triples, which the extractors do for every noun phrase.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TripleBenchmark {
+	private List<String> words;
+	private List<Triple> triples;
+	private int next;
+
+	@Setup
+	public void setup() {
+		words = Samples.words();
+		triples = Samples.triples(10000);
+	}
+
+	private String nextWord() {
+		String word = words.get(next);
+		next = (next + 1) % words.size();
+		return word;
+	}
+
+	@Benchmark
+	public String format() {
+		return Triple.format(nextWord());
+	}
+
+	@Benchmark
+	public Triple narrowerAndInversion() {
+		String main = nextWord();
+		return Triple.narrower(main, nextWord() + ' ' + main).inversion();
+	}
+
+	@Benchmark
+	public Set<Triple> deduplicate() {
+		Set<Triple> set = new HashSet<Triple>();
+		for (Triple t : triples) {
+			set.add(t);
+			set.add(t.inversion());
+		}
+		return set;
+	}
+}
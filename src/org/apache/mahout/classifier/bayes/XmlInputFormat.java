@@ -48,23 +48,42 @@ public class XmlInputFormat extends FileInputFormat<Text, Text> {
 
 	/**
 	 * XMLRecordReader class to read through a given xml document to output xml
-	 * blocks as records as specified by the start tag and end tag
+	 * blocks as records as specified by the start tag and end tag.
 	 * 
+	 * The file is read in large blocks into a reusable buffer and the tags are
+	 * found with Knuth-Morris-Pratt, so partial matches that overlap the real
+	 * tag are not lost. A record belongs to the split that holds the first byte
+	 * of its start tag; it is read to its end tag even if that lies past the end
+	 * of the split, and the next split skips it.
 	 */
 	public static class XmlRecordReader implements
 			RecordReader<Text, Text> {
+		private static final int BLOCK_SIZE = 64 * 1024;
+
 		private final byte[] startTag;
 		private final byte[] endTag;
+		private final int[] startFailure;
+		private final int[] endFailure;
 		private final long start;
 		private final long end;
 		private final String fileName;
 		private final FSDataInputStream fsin;
 		private final DataOutputBuffer buffer = new DataOutputBuffer();
 
+		private final byte[] block = new byte[BLOCK_SIZE];
+		private int blockPos = 0;
+		private int blockLength = 0;
+		/**
+		 * The position in the file of the first byte after the block.
+		 */
+		private long blockEnd;
+
 		public XmlRecordReader(FileSplit split, JobConf jobConf)
 				throws IOException {
 			startTag = jobConf.get(START_TAG_KEY).getBytes("utf-8");
 			endTag = jobConf.get(END_TAG_KEY).getBytes("utf-8");
+			startFailure = failure(startTag);
+			endFailure = failure(endTag);
 
 			// open the file and seek to the start of the split
 			start = split.getStart();
@@ -74,15 +93,16 @@ public class XmlInputFormat extends FileInputFormat<Text, Text> {
 			FileSystem fs = file.getFileSystem(jobConf);
 			fsin = fs.open(split.getPath());
 			fsin.seek(start);
+			blockEnd = start;
 		}
 
 		@Override
 		public boolean next(Text key, Text value) throws IOException {
-			if (fsin.getPos() < end) {
-				if (readUntilMatch(startTag, false)) {
+			if (getPos() < end) {
+				if (readUntilMatch(startTag, startFailure, false)) {
 					try {
 						buffer.write(startTag);
-						if (readUntilMatch(endTag, true)) {
+						if (readUntilMatch(endTag, endFailure, true)) {
 							key.set(fileName);
 							value.set(buffer.getData(), 0, buffer.getLength());
 							return true;
@@ -107,7 +127,7 @@ public class XmlInputFormat extends FileInputFormat<Text, Text> {
 
 		@Override
 		public long getPos() throws IOException {
-			return fsin.getPos();
+			return blockEnd - (blockLength - blockPos);
 		}
 
 		@Override
@@ -117,32 +137,84 @@ public class XmlInputFormat extends FileInputFormat<Text, Text> {
 
 		@Override
 		public float getProgress() throws IOException {
-			return (fsin.getPos() - start) / (float) (end - start);
+			if (end == start)
+				return 1.0f;
+			return Math.min(1.0f, (getPos() - start) / (float) (end - start));
 		}
 
-		private boolean readUntilMatch(byte[] match, boolean withinBlock)
-				throws IOException {
-			int i = 0;
+		/**
+		 * The Knuth-Morris-Pratt failure function: for each prefix of the
+		 * pattern, the length of its longest proper prefix that is also a
+		 * suffix.
+		 */
+		private static int[] failure(byte[] pattern) {
+			int[] failure = new int[pattern.length];
+			int k = 0;
+			for (int i = 1; i < pattern.length; i++) {
+				while (k > 0 && pattern[i] != pattern[k])
+					k = failure[k - 1];
+				if (pattern[i] == pattern[k])
+					k++;
+				failure[i] = k;
+			}
+			return failure;
+		}
+
+		/**
+		 * @return false at the end of the file
+		 */
+		private boolean fill() throws IOException {
+			int n = fsin.read(block, 0, block.length);
+			if (n <= 0)
+				return false;
+			blockPos = 0;
+			blockLength = n;
+			blockEnd += n;
+			return true;
+		}
+
+		/**
+		 * Consume bytes up to and including the next match.
+		 * @param withinBlock whether to save the bytes to the record buffer
+		 * @return whether the match was found. Outside a record, the search
+		 *         gives up once no match could start before the end of the
+		 *         split.
+		 */
+		private boolean readUntilMatch(byte[] match, int[] failure,
+				boolean withinBlock) throws IOException {
+			int j = 0;
 			while (true) {
-				int b = fsin.read();
-				// end of file:
-				if (b == -1)
+				if (blockPos == blockLength && !fill())
 					return false;
-				// save to buffer:
+				int from = blockPos;
+				long blockStart = blockEnd - blockLength;
+				int i = blockPos;
+				boolean found = false;
+				boolean passedEnd = false;
+				while (i < blockLength) {
+					byte b = block[i++];
+					while (j > 0 && b != match[j])
+						j = failure[j - 1];
+					if (b == match[j])
+						j++;
+					if (j == match.length) {
+						found = true;
+						break;
+					}
+					// a match starting here or later would belong to the next split
+					if (!withinBlock && blockStart + i - j >= end) {
+						passedEnd = true;
+						break;
+					}
+				}
 				if (withinBlock)
-					buffer.write(b);
-
-				// check if we're matching:
-				if (b == match[i]) {
-					i++;
-					if (i >= match.length)
-						return true;
-				} else
-					i = 0;
-				// see if we've passed the stop point:
-				if (!withinBlock && i == 0 && fsin.getPos() >= end)
+					buffer.write(block, from, i - from);
+				blockPos = i;
+				if (found)
+					return true;
+				if (passedEnd)
 					return false;
 			}
 		}
 	}
-}
\ No newline at end of file
+}
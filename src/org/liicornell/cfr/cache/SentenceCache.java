@@ -0,0 +1,197 @@
+package org.liicornell.cfr.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.liicornell.cfr.rdf.Triple;
+
+/**
+ * A bounded, in-memory {@link TripleCache} that evicts the least recently used sentences.
+ * 
+ * Sentences are keyed by a 64-bit fingerprint and spread over independently locked segments, so workers looking up
+ * different sentences rarely wait for each other. The sentence itself is kept alongside its triples and compared on
+ * every hit, so a fingerprint collision is a miss, never a wrong answer.
+ * 
+ * The cache in use is global, like {@link org.liicornell.cfr.runner.ParseBudget}; set it before the first sentence is
+ * parsed. Hit and miss counts are in {@link #toString()}.
+ */
+public class SentenceCache implements TripleCache {
+	public static final int DEFAULT_SEGMENTS = 16;
+
+	private static volatile TripleCache current;
+
+	private final Segment[] segments;
+
+	/**
+	 * @param maxEntries the most sentences to keep
+	 */
+	public SentenceCache(int maxEntries) {
+		this(maxEntries, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * @param maxEntries the most sentences to keep
+	 * @param segments the number of independently locked segments, rounded up to a power of two
+	 */
+	public SentenceCache(int maxEntries, int segments) {
+		int n = 1;
+		while (n < segments)
+			n <<= 1;
+		int perSegment = Math.max(1, (maxEntries + n - 1) / n);
+		this.segments = new Segment[n];
+		for (int i = 0; i < n; i++) {
+			this.segments[i] = new Segment(perSegment);
+		}
+	}
+
+	/**
+	 * @return the cache the generators consult, or null if there is none
+	 */
+	public static TripleCache get() {
+		return current;
+	}
+
+	/**
+	 * @param cache the cache the generators consult from now on, or null to parse every sentence
+	 */
+	public static void set(TripleCache cache) {
+		current = cache;
+	}
+
+	/**
+	 * A 64-bit FNV-1a hash of the characters in a sentence.
+	 */
+	public static long fingerprint(CharSequence sentence) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < sentence.length(); i++) {
+			hash ^= sentence.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	@Override
+	public List<Triple> get(String sentence) {
+		long key = fingerprint(sentence);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			Entry entry = segment.get(key);
+			if (entry != null && entry.sentence.equals(sentence)) {
+				segment.hits++;
+				return entry.triples;
+			}
+			segment.misses++;
+			return null;
+		}
+	}
+
+	@Override
+	public void put(String sentence, Collection<Triple> triples) {
+		long key = fingerprint(sentence);
+		Entry entry = new Entry(sentence, triples);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	private Segment segmentFor(long key) {
+		int h = (int) (key ^ (key >>> 32));
+		return segments[h & (segments.length - 1)];
+	}
+
+	public long hits() {
+		long hits = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				hits += segment.hits;
+			}
+		}
+		return hits;
+	}
+
+	public long misses() {
+		long misses = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				misses += segment.misses;
+			}
+		}
+		return misses;
+	}
+
+	public long evictions() {
+		long evictions = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				evictions += segment.evictions;
+			}
+		}
+		return evictions;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the fraction of lookups that were hits, or 0 before the first lookup
+	 */
+	public double hitRate() {
+		long hits = hits();
+		long lookups = hits + misses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Sentence cache: %d hits, %d misses (%.1f%% hit rate), %d sentences, %d evicted", hits(),
+				misses(), 100 * hitRate(), size(), evictions());
+	}
+
+	private static class Entry {
+		final String sentence;
+		final List<Triple> triples;
+
+		Entry(String sentence, Collection<Triple> triples) {
+			this.sentence = sentence;
+			this.triples = Collections.unmodifiableList(Arrays.asList(triples.toArray(new Triple[triples.size()])));
+		}
+	}
+
+	/**
+	 * An access-ordered map; callers hold its lock.
+	 */
+	private static class Segment extends LinkedHashMap<Long, Entry> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		long hits;
+		long misses;
+		long evictions;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+			if (size() > capacity) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
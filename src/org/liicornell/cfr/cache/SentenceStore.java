@@ -0,0 +1,292 @@
+package org.liicornell.cfr.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.liicornell.cfr.rdf.Triple;
+
+/**
+ * A {@link TripleCache} kept in a file, so that a rerun over a new edition of the CFR only parses the sentences that
+ * changed.
+ * 
+ * The file is an append-only log. Each record is keyed by the SHA-1 of the pipeline version and the preprocessed
+ * sentence, so results from a different parser, model or beam size are never reused. The offsets of the records are
+ * indexed in memory when the store is opened; the triples themselves are read from disk on a hit. A record cut short
+ * by a crash is dropped when the store is next opened.
+ */
+public class SentenceStore implements TripleCache, Closeable {
+	private static final byte[] MAGIC = { 'C', 'F', 'R', 'S', 'T', 'O', 'R', '1' };
+	private static final int KEY_LENGTH = 20;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final byte[] version;
+	private final ConcurrentHashMap<Long, Long> index = new ConcurrentHashMap<Long, Long>();
+	private final RandomAccessFile reader;
+	private final FileChannel channel;
+	private final DataOutputStream out;
+	private long length;
+	private volatile long flushed;
+	/**
+	 * Set when a write fails part way through a record. Nothing more is added, since later records would follow the
+	 * partial one; it is cut off when the store is next opened.
+	 */
+	private volatile boolean failed;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong added = new AtomicLong();
+
+	private static final ThreadLocal<MessageDigest> sha1 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	/**
+	 * Open a store, creating the file if it does not exist.
+	 * @param file the log file
+	 * @param version identifies the pipeline, models and settings that produced the triples
+	 * @throws IOException if the file cannot be read or is not a sentence store
+	 */
+	public SentenceStore(File file, String version) throws IOException {
+		this.file = file;
+		this.version = (version + '\n').getBytes(UTF8);
+		length = recover();
+		flushed = length;
+		reader = new RandomAccessFile(file, "r");
+		channel = reader.getChannel();
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024));
+	}
+
+	/**
+	 * Index every complete record, creating the file or cutting off a torn last record as needed.
+	 * @return the length of the valid part of the file
+	 */
+	private long recover() throws IOException {
+		if (!file.exists() || file.length() == 0) {
+			FileOutputStream header = new FileOutputStream(file);
+			try {
+				header.write(MAGIC);
+			} finally {
+				header.close();
+			}
+			return MAGIC.length;
+		}
+
+		long offset = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException(file + " is not a sentence store");
+			}
+			offset = MAGIC.length;
+			byte[] key = new byte[KEY_LENGTH];
+			while (true) {
+				in.readFully(key);
+				int size = in.readInt();
+				if (size < 0) {
+					break;
+				}
+				in.readFully(new byte[size]);
+				index.put(prefix(key), offset);
+				offset += KEY_LENGTH + 4 + size;
+			}
+		} catch (EOFException ex) {
+			// end of file, or a record cut short
+		} finally {
+			in.close();
+		}
+
+		if (offset < MAGIC.length) {
+			throw new IOException(file + " is not a sentence store");
+		}
+		if (offset < file.length()) {
+			System.err.println("Dropping " + (file.length() - offset) + " bytes of incomplete records from " + file);
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(offset);
+			} finally {
+				raf.close();
+			}
+		}
+		return offset;
+	}
+
+	private byte[] key(String sentence) {
+		MessageDigest digest = sha1.get();
+		digest.reset();
+		digest.update(version);
+		return digest.digest(sentence.getBytes(UTF8));
+	}
+
+	/**
+	 * The index is keyed on the first 64 bits of the SHA-1. Two sentences sharing that prefix are told apart when read,
+	 * but only the first of them is stored: the second is never added, and is parsed again on every run.
+	 */
+	private static long prefix(byte[] key) {
+		long prefix = 0;
+		for (int i = 0; i < 8; i++) {
+			prefix = (prefix << 8) | (key[i] & 0xff);
+		}
+		return prefix;
+	}
+
+	@Override
+	public List<Triple> get(String sentence) {
+		byte[] key = key(sentence);
+		Long offset = index.get(prefix(key));
+		if (offset != null) {
+			try {
+				List<Triple> triples = read(offset, key);
+				if (triples != null) {
+					hits.incrementAndGet();
+					return triples;
+				}
+			} catch (IOException ex) {
+				System.err.println("Could not read " + file + ": " + ex);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * @return the triples of the record at an offset, or null if it is for another key
+	 */
+	private List<Triple> read(long offset, byte[] key) throws IOException {
+		if (offset >= flushed) {
+			synchronized (this) {
+				try {
+					out.flush();
+				} catch (IOException ex) {
+					failed = true;
+					throw ex;
+				}
+				flushed = length;
+			}
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(KEY_LENGTH + 4);
+		readFully(header, offset);
+		if (!Arrays.equals(Arrays.copyOf(header.array(), KEY_LENGTH), key)) {
+			return null;
+		}
+		ByteBuffer payload = ByteBuffer.allocate(header.getInt(KEY_LENGTH));
+		readFully(payload, offset + KEY_LENGTH + 4);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+		int count = in.readInt();
+		List<Triple> triples = new ArrayList<Triple>(count);
+		for (int i = 0; i < count; i++) {
+			String subject = in.readUTF();
+			String object = in.readUTF();
+			String predicate = in.readUTF();
+			triples.add(Triple.lii(subject, object, predicate));
+		}
+		return Collections.unmodifiableList(triples);
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	@Override
+	public void put(String sentence, Collection<Triple> triples) {
+		byte[] key = key(sentence);
+		if (failed || index.containsKey(prefix(key))) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream payload = new DataOutputStream(bytes);
+			payload.writeInt(triples.size());
+			for (Triple triple : triples) {
+				payload.writeUTF(triple.subject);
+				payload.writeUTF(triple.object);
+				payload.writeUTF(triple.predicate);
+			}
+			payload.flush();
+
+			synchronized (this) {
+				if (failed || index.containsKey(prefix(key))) {
+					return;
+				}
+				long offset = length;
+				try {
+					out.write(key);
+					out.writeInt(bytes.size());
+					bytes.writeTo(out);
+				} catch (IOException ex) {
+					failed = true;
+					System.err.println("Could not write to " + file + ", no more sentences will be added: " + ex);
+					return;
+				}
+				length += KEY_LENGTH + 4 + bytes.size();
+				index.put(prefix(key), offset);
+			}
+			added.incrementAndGet();
+		} catch (IOException ex) {
+			System.err.println("Could not write to " + file + ": " + ex);
+		}
+	}
+
+	/**
+	 * @return the number of sentences in the store
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Write out everything added and close the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			out.close();
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Sentence store: %d hits, %d misses, %d sentences added, %d sentences in %s", hits.get(),
+				misses.get(), added.get(), size(), file);
+	}
+}
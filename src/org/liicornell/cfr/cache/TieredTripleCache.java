@@ -0,0 +1,43 @@
+package org.liicornell.cfr.cache;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.liicornell.cfr.rdf.Triple;
+
+/**
+ * Puts a fast cache in front of a slower one, typically a {@link SentenceCache} in front of a {@link SentenceStore}.
+ * Hits in the slower cache are copied into the faster one.
+ */
+public class TieredTripleCache implements TripleCache {
+	private final TripleCache first;
+	private final TripleCache second;
+
+	public TieredTripleCache(TripleCache first, TripleCache second) {
+		this.first = first;
+		this.second = second;
+	}
+
+	@Override
+	public List<Triple> get(String sentence) {
+		List<Triple> triples = first.get(sentence);
+		if (triples == null) {
+			triples = second.get(sentence);
+			if (triples != null) {
+				first.put(sentence, triples);
+			}
+		}
+		return triples;
+	}
+
+	@Override
+	public void put(String sentence, Collection<Triple> triples) {
+		first.put(sentence, triples);
+		second.put(sentence, triples);
+	}
+
+	@Override
+	public String toString() {
+		return first + "\n" + second;
+	}
+}
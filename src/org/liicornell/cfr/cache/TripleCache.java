@@ -0,0 +1,23 @@
+package org.liicornell.cfr.cache;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.liicornell.cfr.rdf.Triple;
+
+/**
+ * Remembers the triples extracted from a preprocessed sentence. Implementations must be thread-safe.
+ */
+public interface TripleCache {
+	/**
+	 * @param sentence a preprocessed sentence
+	 * @return the triples extracted from it, or null if it has not been seen
+	 */
+	List<Triple> get(String sentence);
+
+	/**
+	 * @param sentence a preprocessed sentence
+	 * @param triples every triple extracted from it. The cache keeps its own copy.
+	 */
+	void put(String sentence, Collection<Triple> triples);
+}
@@ -0,0 +1,4 @@
+/**
+ * Caches of the triples extracted from each sentence, so that boilerplate repeated throughout the CFR is parsed once.
+ */
+package org.liicornell.cfr.cache;
@@ -19,7 +19,10 @@ import edu.stanford.nlp.trees.TreebankLanguagePack;
 public class StanfordPipeline {
 	private static StanfordPipeline instance;
 
-	public final StanfordCoreNLP pipeline;
+	/**
+	 * The full CoreNLP stack, which is only needed to resolve pronouns. Built on first use.
+	 */
+	private StanfordCoreNLP pipeline;
 	public final GrammaticalStructureFactory gsf;
 	public final LexicalizedParser lp;
 
@@ -32,19 +35,39 @@ public class StanfordPipeline {
 		return instance;
 	}
 
+	/**
+	 * Start loading the parser in the background, so that it is ready sooner than if it were loaded when first used.
+	 */
+	public static void warmUp() {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				getInstance();
+			}
+		}, "model-loader");
+		t.setDaemon(true);
+		t.start();
+	}
+
 	private StanfordPipeline() {
-		Properties props = new Properties();
-		props.put("annotators",
-				"tokenize, ssplit, pos, parse, lemma, ner, dcoref");
-		pipeline = new StanfordCoreNLP(props);
 		lp = LexicalizedParser
 				.loadModel("edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz");
 		TreebankLanguagePack tlp = new PennTreebankLanguagePack();
 		gsf = tlp.grammaticalStructureFactory();
 	}
 
+	private synchronized StanfordCoreNLP getCoreNLP() {
+		if (pipeline == null) {
+			Properties props = new Properties();
+			props.put("annotators",
+					"tokenize, ssplit, pos, parse, lemma, ner, dcoref");
+			pipeline = new StanfordCoreNLP(props);
+		}
+		return pipeline;
+	}
+
 	public String resolvePronouns(String text) {
-		Annotation doc = pipeline.process(text);
+		Annotation doc = getCoreNLP().process(text);
 		Map<Integer, CorefChain> graph = doc.get(CorefChainAnnotation.class);
 
 		StringBuilder s = new StringBuilder();
@@ -13,21 +13,63 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.liicornell.cfr.cache.SentenceCache;
+import org.liicornell.cfr.cache.TripleCache;
+import org.liicornell.cfr.metrics.Events;
+import org.liicornell.cfr.metrics.Metrics;
+import org.liicornell.cfr.metrics.Stage;
+import org.liicornell.cfr.metrics.StageMetrics;
 import org.liicornell.cfr.preprocessor.Preprocessor;
+import org.liicornell.cfr.rdf.BufferedTripleSink;
 import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleSink;
+import org.liicornell.cfr.runner.ParseBudget;
+import org.liicornell.cfr.runner.SentenceTask;
 
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.process.DocumentPreprocessor;
 import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
 import edu.stanford.nlp.trees.GrammaticalStructure;
+import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TreeGraphNode;
 import edu.stanford.nlp.trees.TypedDependency;
 
-public class StanfordTripleGenerator implements Runnable {
+public class StanfordTripleGenerator implements SentenceTask {
+	/**
+	 * Identifies the models and extraction rules, for caches that outlive a run. Change it whenever either changes.
+	 */
+	public static final String VERSION = "corenlp/englishPCFG/1";
+
+	/**
+	 * The name of this pipeline in {@link Metrics}.
+	 */
+	public static final String PARSER = "corenlp";
+
+	private static final StageMetrics PREPROCESS = Metrics.get(PARSER, Stage.PREPROCESS);
+	private static final StageMetrics SENTENCES = Metrics.get(PARSER, Stage.SENTENCES);
+	private static final StageMetrics PARSE = Metrics.get(PARSER, Stage.PARSE);
+	private static final StageMetrics TRAVERSE = Metrics.get(PARSER, Stage.TRAVERSE);
+	private static final StageMetrics DEDUP = Metrics.get(PARSER, Stage.DEDUP);
+
+	/**
+	 * Longer sentences are skipped unless the {@link ParseBudget} says otherwise.
+	 */
+	public static final int DEFAULT_MAX_TOKENS = 70;
+
 	private List<TypedDependency> tdl;
-	private final Set<Triple> triples;
+	private final BufferedTripleSink sink;
+	/**
+	 * The triples of the sentence being processed.
+	 */
+	private final Set<Triple> triples = new HashSet<Triple>();
 	private Collection<TreeGraphNode> nodes;
 	private String text;
+	private List<HasWord> sentence;
+	private String source;
+	/**
+	 * How many triples the last sentence gave, for its sentence event.
+	 */
+	private int found;
 
 //	private final Map<TreeGraphNode, List<String>> predicateSubPropertyMap = new HashMap<TreeGraphNode, List<String>>();
 	private final Map<TreeGraphNode, List<String>> vocabMap = new HashMap<TreeGraphNode, List<String>>();
@@ -39,15 +81,69 @@ public class StanfordTripleGenerator implements Runnable {
 
 	private static Set<String> stopWords = new HashSet<String>();
 
-	public StanfordTripleGenerator(Set<Triple> triples, String text) {
-		this.triples = triples;
+	/**
+	 * @param triples where to put the triples
+	 * @param text a raw block of text, which is preprocessed and split into sentences when this generator runs
+	 */
+	public StanfordTripleGenerator(TripleSink triples, String text) {
+		this.sink = new BufferedTripleSink(triples);
 		this.text = text;
 	}
 
-	private boolean add(Triple t) {
-		synchronized (triples) {
-			return triples.add(t);
+	private StanfordTripleGenerator(TripleSink triples, List<HasWord> sentence, String source) {
+		this.sink = new BufferedTripleSink(triples);
+		this.sentence = sentence;
+		this.source = source;
+	}
+
+	/**
+	 * Preprocess a raw block of text and split it into sentences, so that each one can be parsed separately.
+	 * @param triples where the generators put their triples
+	 * @param text a raw block of text
+	 * @return a generator for each sentence
+	 */
+	public static List<StanfordTripleGenerator> split(TripleSink triples, String text) {
+		return split(triples, text, null);
+	}
+
+	/**
+	 * Preprocess a raw block of text and split it into sentences, so that each one can be parsed separately.
+	 * @param triples where the generators put their triples
+	 * @param text a raw block of text
+	 * @param source where the text came from, such as a file and element, for Flight Recorder events
+	 * @return a generator for each sentence
+	 */
+	public static List<StanfordTripleGenerator> split(TripleSink triples, String text, String source) {
+		List<StanfordTripleGenerator> generators = new ArrayList<StanfordTripleGenerator>();
+		for (List<HasWord> sentence : getSentences(text)) {
+			generators.add(new StanfordTripleGenerator(triples, sentence, source));
 		}
+		return generators;
+	}
+
+	private static List<List<HasWord>> getSentences(String text) {
+		long start = System.nanoTime();
+		Reader reader = new StringReader(Preprocessor.preprocessText(text));
+		PREPROCESS.record(start);
+		start = System.nanoTime();
+		List<List<HasWord>> sentences = new ArrayList<List<HasWord>>();
+		for (List<HasWord> sentence : new DocumentPreprocessor(reader)) {
+			sentences.add(sentence);
+		}
+		SENTENCES.record(start, sentences.size());
+		return sentences;
+	}
+
+	/**
+	 * @return the number of tokens this generator will parse, or 0 if it has not been split into sentences yet
+	 */
+	@Override
+	public int tokenCount() {
+		return sentence == null ? 0 : sentence.size();
+	}
+
+	private void add(Triple t) {
+		triples.add(t);
 	}
 
 	// Finds the noun after verb for finding object of nsubj(verb, noun)
@@ -80,34 +176,94 @@ public class StanfordTripleGenerator implements Runnable {
 
 	@Override
 	public void run() {
-		text = Preprocessor.preprocessText(text);
-		Reader reader = new StringReader(text);
-		for (List<HasWord> sentence : new DocumentPreprocessor(reader)) {
-			if (sentence.size() > 70)
-				continue;
+		if (sentence != null) {
+			process(sentence);
+		} else {
+			for (List<HasWord> s : getSentences(text)) {
+				process(s);
+			}
+		}
+		long start = System.nanoTime();
+		sink.flush();
+		DEDUP.record(start, 0);
+	}
+
+	private void process(List<HasWord> words) {
+		Object event = Events.get().beginSentence();
+		String key = toString(words);
+		found = 0;
+		String outcome = extract(words, key);
+		Events.get().endSentence(event, source, key.length(), words.size(), found, outcome);
+	}
 
-			GrammaticalStructure gs = StanfordPipeline.getInstance().gsf.newGrammaticalStructure(StanfordPipeline.getInstance().lp
-					.apply(sentence));
+	/**
+	 * @return what became of the sentence: parsed, cached or too long
+	 */
+	private String extract(List<HasWord> words, String key) {
+		TripleCache cache = SentenceCache.get();
+		if (cache != null) {
+			List<Triple> cached = cache.get(key);
+			if (cached != null) {
+				sink.addAll(cached);
+				found = cached.size();
+				return "cached";
+			}
+		}
+
+		ParseBudget budget = ParseBudget.get();
+		if (words.size() > budget.maxTokens(DEFAULT_MAX_TOKENS)) {
+			ParseBudget.record(key, words.size() + " tokens");
+			return "too long";
+		}
+
+		long start = System.nanoTime();
+		Tree tree = StanfordPipeline.getInstance().lp.apply(words);
+		PARSE.record(start);
+		start = System.nanoTime();
+		GrammaticalStructure gs = StanfordPipeline.getInstance().gsf.newGrammaticalStructure(tree);
 
-			tdl = gs.typedDependenciesCCprocessed(true);
-			removeRomanNumerals(tdl);
+		tdl = gs.typedDependenciesCCprocessed(true);
+		removeRomanNumerals(tdl);
 
-			nodes = gs.getNodes();
+		nodes = gs.getNodes();
 
-			generateNNmap();
-			generateAModNNAdvModTriples();
-			generatePrepTriples();
+		generateNNmap();
+		generateAModNNAdvModTriples();
+		generatePrepTriples();
 
-			generateConjugateAndNegationMaps();
-			generateConjTriples();
+		generateConjugateAndNegationMaps();
+		generateConjTriples();
 
-			generateHearstPatternTriples();
+		generateHearstPatternTriples();
 
-			// uses predicateSubPropertyMap, nSubjMap, dObjMap
-			generateNSubjDObjHashMaps();
-			generateNSubjDobj();
+		// uses predicateSubPropertyMap, nSubjMap, dObjMap
+		generateNSubjDObjHashMaps();
+		generateNSubjDobj();
+		TRAVERSE.record(start);
+
+		if (cache != null) {
+			cache.put(key, triples);
 		}
+		start = System.nanoTime();
+		sink.addAll(triples);
+		DEDUP.record(start, triples.size());
+		found = triples.size();
+		triples.clear();
+		clearSentenceState();
+		return "parsed";
+	}
 
+	/**
+	 * The maps describe one sentence's dependencies. They are cleared after each sentence, so that a sentence's triples
+	 * depend on that sentence alone and can be cached.
+	 */
+	private void clearSentenceState() {
+		vocabMap.clear();
+		nSubjMap.clear();
+		dObjMap.clear();
+		nnMap.clear();
+		conjMap.clear();
+		negativeList.clear();
 	}
 
 	// Generate triples of the form nsubj, dObj
@@ -639,6 +795,16 @@ public class StanfordTripleGenerator implements Runnable {
 		}
 	}
 
+	private static String toString(List<HasWord> words) {
+		StringBuilder sb = new StringBuilder();
+		for (HasWord word : words) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(word.word());
+		}
+		return sb.toString();
+	}
+
 	private static void removeRomanNumerals(List<TypedDependency> tdl) {
 		Iterator<TypedDependency> itr = tdl.iterator();
 		while (itr.hasNext()) {
@@ -0,0 +1,75 @@
+package org.liicornell.cfr.metrics;
+
+/**
+ * Records the Flight Recorder events of the pipeline without depending on <code>jdk.jfr</code>. On a JVM that has
+ * Flight Recorder the events are created and committed as usual; on older JVMs, such as the ones Hadoop runs tasks
+ * in, every method does nothing. Each <code>begin</code> method returns a handle to pass to the matching
+ * <code>end</code> method.
+ */
+public abstract class Events {
+	/**
+	 * Records nothing, for JVMs without Flight Recorder.
+	 */
+	private static final Events NONE = new Events() {
+	};
+
+	private static final Events INSTANCE = load();
+
+	/**
+	 * @return the events of this JVM
+	 */
+	public static Events get() {
+		return INSTANCE;
+	}
+
+	private static Events load() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Events) Class.forName("org.liicornell.cfr.metrics.JfrEvents").getDeclaredConstructor().newInstance();
+		} catch (Exception ex) {
+			return NONE;
+		} catch (LinkageError err) {
+			return NONE;
+		}
+	}
+
+	/**
+	 * Start timing a sentence parse with OpenNLP.
+	 */
+	public Object beginParse() {
+		return null;
+	}
+
+	public void endParse(Object event, String source, int sentenceLength, int tokens, int beamSize, boolean timedOut) {
+	}
+
+	/**
+	 * Start timing the traversal of a parse tree.
+	 */
+	public Object beginTraverse() {
+		return null;
+	}
+
+	public void endTraverse(Object event, String source, int sentenceLength, int tokens, int triples) {
+	}
+
+	/**
+	 * Start timing a sentence processed with CoreNLP.
+	 */
+	public Object beginSentence() {
+		return null;
+	}
+
+	public void endSentence(Object event, String source, int sentenceLength, int tokens, int triples, String outcome) {
+	}
+
+	/**
+	 * Start timing the writing of an RDF file.
+	 */
+	public Object beginWrite() {
+		return null;
+	}
+
+	public void endWrite(Object event, String file, long statements) {
+	}
+}
@@ -0,0 +1,78 @@
+package org.liicornell.cfr.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Each power of two is split into four buckets, so percentiles are
+ * accurate to within 19%, which is plenty to tell where a run spends its time.
+ */
+public class Histogram {
+	private static final int SUB_BUCKETS = 4;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m;
+		while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+			// retry
+		}
+	}
+
+	private static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS)
+			return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+		return exponent * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return the largest value that falls in a bucket
+	 */
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS;
+		int sub = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+	}
+
+	public long count() {
+		return count.get();
+	}
+
+	public long totalNanos() {
+		return total.get();
+	}
+
+	public long maxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * @param fraction between 0 and 1, such as 0.99
+	 * @return an upper bound on that percentile, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long percentile(double fraction) {
+		long n = count.get();
+		if (n == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * n);
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+}
@@ -0,0 +1,83 @@
+package org.liicornell.cfr.metrics;
+
+/**
+ * The events of {@link Events}, recorded with Flight Recorder. Only loaded once <code>jdk.jfr</code> is known to be
+ * there.
+ */
+class JfrEvents extends Events {
+	@Override
+	public Object beginParse() {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endParse(Object handle, String source, int sentenceLength, int tokens, int beamSize, boolean timedOut) {
+		ParseEvent event = (ParseEvent) handle;
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.sentenceLength = sentenceLength;
+			event.tokens = tokens;
+			event.beamSize = beamSize;
+			event.timedOut = timedOut;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginTraverse() {
+		TraverseEvent event = new TraverseEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endTraverse(Object handle, String source, int sentenceLength, int tokens, int triples) {
+		TraverseEvent event = (TraverseEvent) handle;
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.sentenceLength = sentenceLength;
+			event.tokens = tokens;
+			event.triples = triples;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginSentence() {
+		SentenceEvent event = new SentenceEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endSentence(Object handle, String source, int sentenceLength, int tokens, int triples, String outcome) {
+		SentenceEvent event = (SentenceEvent) handle;
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.sentenceLength = sentenceLength;
+			event.tokens = tokens;
+			event.triples = triples;
+			event.outcome = outcome;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginWrite() {
+		WriteEvent event = new WriteEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endWrite(Object handle, String file, long statements) {
+		WriteEvent event = (WriteEvent) handle;
+		if (event.shouldCommit()) {
+			event.file = file;
+			event.statements = statements;
+			event.commit();
+		}
+	}
+}
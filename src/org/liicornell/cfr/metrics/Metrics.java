@@ -0,0 +1,85 @@
+package org.liicornell.cfr.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The timings of every stage, by parser. Each {@link StageMetrics} is registered with the platform MBean server as
+ * <code>org.liicornell.cfr:type=Stage,parser=...,name=...</code> when it is first used, so a running job can be
+ * watched with JConsole or VisualVM.
+ */
+public class Metrics {
+	public static final String DOMAIN = "org.liicornell.cfr";
+
+	private static final ConcurrentMap<String, StageMetrics> stages = new ConcurrentHashMap<String, StageMetrics>();
+
+	/**
+	 * @param parser the parser whose pipeline this is, such as <code>opennlp</code>
+	 * @param stage the stage
+	 * @return the metrics for that stage, created and registered on first use
+	 */
+	public static StageMetrics get(String parser, Stage stage) {
+		String key = parser + '/' + stage.name();
+		StageMetrics metrics = stages.get(key);
+		if (metrics == null) {
+			StageMetrics created = new StageMetrics(parser, stage);
+			metrics = stages.putIfAbsent(key, created);
+			if (metrics == null) {
+				metrics = created;
+				register(created);
+			}
+		}
+		return metrics;
+	}
+
+	private static void register(StageMetrics metrics) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(DOMAIN + ":type=Stage,parser=" + ObjectName.quote(metrics.getParser())
+					+ ",name=" + ObjectName.quote(metrics.getStage()));
+			if (!server.isRegistered(name)) {
+				server.registerMBean(metrics, name);
+			}
+		} catch (JMException ex) {
+			System.err.println("Could not register metrics for " + metrics.getStage() + ": " + ex);
+		}
+	}
+
+	/**
+	 * @return a table of every stage that has recorded something, in pipeline order
+	 */
+	public static String summary() {
+		List<StageMetrics> used = new ArrayList<StageMetrics>();
+		for (StageMetrics metrics : stages.values()) {
+			if (metrics.getCount() > 0)
+				used.add(metrics);
+		}
+		Collections.sort(used, new Comparator<StageMetrics>() {
+			@Override
+			public int compare(StageMetrics a, StageMetrics b) {
+				int c = a.getParser().compareTo(b.getParser());
+				return c != 0 ? c : a.stage().compareTo(b.stage());
+			}
+		});
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-8s %-12s %10s %12s %10s %10s %10s %10s %10s %12s%n", "parser", "stage", "count",
+				"total s", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "items/s"));
+		for (StageMetrics m : used) {
+			sb.append(String.format("%-8s %-12s %10d %12.1f %10.3f %10.3f %10.3f %10.3f %10.3f %12.1f%n", m.getParser(),
+					m.getStage(), m.getCount(), m.getTotalMillis() / 1000, m.getMeanMillis(),
+					m.get50thPercentileMillis(), m.get95thPercentileMillis(), m.get99thPercentileMillis(),
+					m.getMaxMillis(), m.getItemsPerSecond()));
+		}
+		return sb.toString();
+	}
+}
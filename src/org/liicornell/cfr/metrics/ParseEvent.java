@@ -0,0 +1,33 @@
+package org.liicornell.cfr.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for parsing one sentence with OpenNLP.
+ */
+@Name("org.liicornell.cfr.Parse")
+@Label("Sentence Parse")
+@Category({ "CFR Vocabulary", "NLP" })
+@Description("Parsing one sentence with the OpenNLP parser")
+public class ParseEvent extends Event {
+	@Label("Source")
+	@Description("The file and text element the sentence came from")
+	public String source;
+
+	@Label("Sentence Length")
+	@Description("Characters in the sentence")
+	public int sentenceLength;
+
+	@Label("Tokens")
+	public int tokens;
+
+	@Label("Beam Size")
+	public int beamSize;
+
+	@Label("Timed Out")
+	public boolean timedOut;
+}
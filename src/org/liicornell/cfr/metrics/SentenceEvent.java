@@ -0,0 +1,35 @@
+package org.liicornell.cfr.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for handling one sentence with CoreNLP, from the cache lookup to the last triple.
+ */
+@Name("org.liicornell.cfr.Sentence")
+@Label("CoreNLP Sentence")
+@Category({ "CFR Vocabulary", "NLP" })
+@Description("Parsing one sentence with CoreNLP and extracting its triples")
+public class SentenceEvent extends Event {
+	@Label("Source")
+	@Description("The file and text element the sentence came from")
+	public String source;
+
+	@Label("Sentence Length")
+	@Description("Characters in the sentence")
+	public int sentenceLength;
+
+	@Label("Tokens")
+	public int tokens;
+
+	@Label("Triples")
+	@Description("Distinct triples found in the sentence")
+	public int triples;
+
+	@Label("Outcome")
+	@Description("parsed, cached, too long or timed out")
+	public String outcome;
+}
@@ -0,0 +1,25 @@
+package org.liicornell.cfr.metrics;
+
+/**
+ * The stages of the pipeline that are timed, in the order a block of text goes through them.
+ */
+public enum Stage {
+	XML_READ("xml read"),
+	PREPROCESS("preprocess"),
+	/**
+	 * For CoreNLP this includes tokenisation, which its document preprocessor does in the same pass.
+	 */
+	SENTENCES("sentences"),
+	TOKENIZE("tokenize"),
+	PARSE("parse"),
+	TRAVERSE("traverse"),
+	DEDUP("dedup"),
+	MODEL_BUILD("model build"),
+	WRITE("write");
+
+	public final String label;
+
+	private Stage(String label) {
+		this.label = label;
+	}
+}
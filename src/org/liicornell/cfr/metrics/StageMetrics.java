@@ -0,0 +1,105 @@
+package org.liicornell.cfr.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings for one stage of one parser's pipeline. Thread-safe and cheap enough to record every sentence:
+ * 
+ * <pre>
+ * long start = System.nanoTime();
+ * ...
+ * PARSE.record(start);
+ * </pre>
+ */
+public class StageMetrics implements StageMetricsMBean {
+	private static final double MILLIS = 1e6;
+
+	private final String parser;
+	private final Stage stage;
+	private final Histogram histogram = new Histogram();
+	private final AtomicLong items = new AtomicLong();
+
+	StageMetrics(String parser, Stage stage) {
+		this.parser = parser;
+		this.stage = stage;
+	}
+
+	/**
+	 * Record one pass through this stage that handled a single item.
+	 * @param startNanos when it started, from {@link System#nanoTime()}
+	 */
+	public void record(long startNanos) {
+		record(startNanos, 1);
+	}
+
+	/**
+	 * Record one pass through this stage.
+	 * @param startNanos when it started, from {@link System#nanoTime()}
+	 * @param items how many sentences, triples or files it handled
+	 */
+	public void record(long startNanos, int items) {
+		histogram.record(System.nanoTime() - startNanos);
+		this.items.addAndGet(items);
+	}
+
+	@Override
+	public String getParser() {
+		return parser;
+	}
+
+	@Override
+	public String getStage() {
+		return stage.label;
+	}
+
+	public Stage stage() {
+		return stage;
+	}
+
+	@Override
+	public long getCount() {
+		return histogram.count();
+	}
+
+	@Override
+	public long getItems() {
+		return items.get();
+	}
+
+	@Override
+	public double getTotalMillis() {
+		return histogram.totalNanos() / MILLIS;
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long count = histogram.count();
+		return count == 0 ? 0 : histogram.totalNanos() / MILLIS / count;
+	}
+
+	@Override
+	public double get50thPercentileMillis() {
+		return histogram.percentile(0.5) / MILLIS;
+	}
+
+	@Override
+	public double get95thPercentileMillis() {
+		return histogram.percentile(0.95) / MILLIS;
+	}
+
+	@Override
+	public double get99thPercentileMillis() {
+		return histogram.percentile(0.99) / MILLIS;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return histogram.maxNanos() / MILLIS;
+	}
+
+	@Override
+	public double getItemsPerSecond() {
+		long nanos = histogram.totalNanos();
+		return nanos == 0 ? 0 : items.get() * 1e9 / nanos;
+	}
+}
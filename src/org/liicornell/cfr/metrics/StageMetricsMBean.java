@@ -0,0 +1,34 @@
+package org.liicornell.cfr.metrics;
+
+/**
+ * The JMX view of a {@link StageMetrics}. Times are in milliseconds.
+ */
+public interface StageMetricsMBean {
+	String getParser();
+
+	String getStage();
+
+	long getCount();
+
+	/**
+	 * @return sentences, triples or files handled, depending on the stage
+	 */
+	long getItems();
+
+	double getTotalMillis();
+
+	double getMeanMillis();
+
+	double get50thPercentileMillis();
+
+	double get95thPercentileMillis();
+
+	double get99thPercentileMillis();
+
+	double getMaxMillis();
+
+	/**
+	 * @return items per second of time spent in this stage, summed over threads
+	 */
+	double getItemsPerSecond();
+}
@@ -0,0 +1,31 @@
+package org.liicornell.cfr.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for extracting the triples from one OpenNLP parse tree.
+ */
+@Name("org.liicornell.cfr.Traverse")
+@Label("Tree Traversal")
+@Category({ "CFR Vocabulary", "NLP" })
+@Description("Extracting triples from the parse tree of one sentence")
+public class TraverseEvent extends Event {
+	@Label("Source")
+	@Description("The file and text element the sentence came from")
+	public String source;
+
+	@Label("Sentence Length")
+	@Description("Characters in the sentence")
+	public int sentenceLength;
+
+	@Label("Tokens")
+	public int tokens;
+
+	@Label("Triples")
+	@Description("Distinct triples found in the sentence")
+	public int triples;
+}
@@ -0,0 +1,22 @@
+package org.liicornell.cfr.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for writing one RDF file.
+ */
+@Name("org.liicornell.cfr.Write")
+@Label("RDF Write")
+@Category({ "CFR Vocabulary", "Output" })
+@Description("Serialising a model to an RDF file")
+public class WriteEvent extends Event {
+	@Label("File")
+	public String file;
+
+	@Label("Statements")
+	public long statements;
+}
@@ -0,0 +1,4 @@
+/**
+ * Timings of each stage of the pipeline, exposed over JMX and summarised at the end of a run.
+ */
+package org.liicornell.cfr.metrics;
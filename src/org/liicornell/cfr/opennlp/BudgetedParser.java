@@ -0,0 +1,38 @@
+package org.liicornell.cfr.opennlp;
+
+import opennlp.tools.parser.AbstractBottomUpParser;
+import opennlp.tools.parser.Parse;
+import opennlp.tools.parser.ParserModel;
+
+/**
+ * The chunking parser, with a deadline that is checked every time the beam advances. Once the deadline has passed the
+ * parse is abandoned by throwing {@link OutOfTimeException}; the next call to parse starts from a clean state.
+ */
+class BudgetedParser extends opennlp.tools.parser.chunking.Parser {
+	static class OutOfTimeException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private boolean hasDeadline = false;
+	private long deadline;
+
+	BudgetedParser(ParserModel model, int beamSize) {
+		super(model, beamSize, AbstractBottomUpParser.defaultAdvancePercentage);
+	}
+
+	/**
+	 * @param timeoutMillis how long the next parses may take, from now, or 0 for no limit
+	 */
+	void setTimeout(long timeoutMillis) {
+		hasDeadline = timeoutMillis > 0;
+		deadline = System.nanoTime() + timeoutMillis * 1000000L;
+	}
+
+	@Override
+	protected Parse[] advanceParses(Parse p, double probMass) {
+		if (hasDeadline && System.nanoTime() - deadline > 0) {
+			throw new OutOfTimeException();
+		}
+		return super.advanceParses(p, probMass);
+	}
+}
@@ -0,0 +1,105 @@
+package org.liicornell.cfr.opennlp;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.liicornell.cfr.runner.Runner;
+
+/**
+ * Loads one model from the datasets directory, on a background thread, the first time it is asked for. Starting
+ * several loaders before waiting on any of them reads the models in parallel. If {@link ModelSnapshot} has written an
+ * up-to-date copy of the model it is read instead of the original.
+ * @param <T> the type of model
+ */
+abstract class ModelLoader<T> {
+	private static final ExecutorService loaders = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "model-loader");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final String fileName;
+	private Future<T> model;
+
+	ModelLoader(String fileName) {
+		this.fileName = fileName;
+	}
+
+	/**
+	 * Deserialise the model.
+	 * @param in the model file, buffered
+	 * @return the model
+	 * @throws IOException if the model can't be read
+	 */
+	protected abstract T read(InputStream in) throws IOException;
+
+	/**
+	 * Start loading the model in the background, if it hasn't been already.
+	 */
+	synchronized void start() {
+		if (model != null) {
+			return;
+		}
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws IOException {
+				long start = System.nanoTime();
+				File file = file(fileName);
+				InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+				T loaded;
+				try {
+					loaded = read(in);
+				} finally {
+					in.close();
+				}
+				System.out.printf("Loaded %s in %.1fs%n", file, (System.nanoTime() - start) / 1e9);
+				return loaded;
+			}
+		});
+		loaders.execute(task);
+		model = task;
+	}
+
+	/**
+	 * Wait for the model, starting to load it if need be.
+	 * @return the model
+	 * @throws IllegalStateException if interrupted while waiting, with the thread's interrupt flag set again
+	 */
+	T get() {
+		start();
+		try {
+			return model.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for " + fileName, ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("Could not load " + fileName, ex.getCause());
+		}
+	}
+
+	/**
+	 * @param fileName the name of a model in the datasets directory
+	 * @return the snapshot of the model if there is one at least as new as the model, otherwise the model itself
+	 */
+	static File file(String fileName) {
+		File original = new File(Runner.DATASETS_PATH, fileName);
+		File snapshot = new File(ModelSnapshot.directory(), fileName);
+		if (snapshot.isFile() && snapshot.lastModified() >= original.lastModified()) {
+			return snapshot;
+		}
+		return original;
+	}
+}
@@ -0,0 +1,102 @@
+package org.liicornell.cfr.opennlp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.liicornell.cfr.runner.Runner;
+
+/**
+ * Writes fast-loading copies of the OpenNLP models to <code>datasets/snapshot</code>. A model is a zip archive whose
+ * entries are deflated; the snapshot holds the same entries stored uncompressed, so loading it skips inflating tens of
+ * megabytes and reads the file in large sequential blocks. The snapshot is only used while it is at least as new as the
+ * model it was made from, so replacing a model makes the pipeline fall back to the original until this is run again.
+ * <p>
+ * Usage: <code>java -Dcornell.datasets.dir=datasets org.liicornell.cfr.opennlp.ModelSnapshot</code>
+ */
+public class ModelSnapshot {
+	/**
+	 * The models that have snapshots.
+	 */
+	static final String[] MODELS = { "en-token.bin", "en-sent.bin", "en-parser-chunking.bin" };
+
+	/**
+	 * @return where the snapshots are kept
+	 */
+	static File directory() {
+		return new File(Runner.DATASETS_PATH, "snapshot");
+	}
+
+	/**
+	 * Copy a model, storing every entry uncompressed.
+	 * @param model the model as distributed
+	 * @param snapshot where to write the copy
+	 * @throws IOException if either file can't be read or written
+	 */
+	public static void write(File model, File snapshot) throws IOException {
+		File tmp = new File(snapshot.getPath() + ".tmp");
+		ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(model)));
+		try {
+			ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+			try {
+				out.setMethod(ZipOutputStream.STORED);
+				byte[] buffer = new byte[1 << 16];
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				CRC32 crc = new CRC32();
+				for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+					bytes.reset();
+					for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+						bytes.write(buffer, 0, n);
+					}
+					crc.reset();
+					crc.update(bytes.toByteArray());
+					ZipEntry stored = new ZipEntry(entry.getName());
+					stored.setMethod(ZipEntry.STORED);
+					stored.setSize(bytes.size());
+					stored.setCompressedSize(bytes.size());
+					stored.setCrc(crc.getValue());
+					out.putNextEntry(stored);
+					bytes.writeTo(out);
+					out.closeEntry();
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		if (!tmp.renameTo(snapshot)) {
+			snapshot.delete();
+			if (!tmp.renameTo(snapshot))
+				throw new IOException("Could not replace " + snapshot);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (Runner.DATASETS_PATH == null) {
+			System.err.println("Set cornell.datasets.dir to the datasets directory.");
+			System.exit(1);
+		}
+		File dir = directory();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Could not create " + dir);
+		for (String name : MODELS) {
+			File model = new File(Runner.DATASETS_PATH, name);
+			if (!model.isFile()) {
+				System.err.println("Skipping " + model + ", which does not exist.");
+				continue;
+			}
+			File snapshot = new File(dir, name);
+			write(model, snapshot);
+			System.out.println("Wrote " + snapshot + " (" + model.length() + " -> " + snapshot.length() + " bytes)");
+		}
+	}
+}
@@ -1,13 +1,11 @@
 package org.liicornell.cfr.opennlp;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -26,9 +24,7 @@ import opennlp.tools.parser.Parse;
 import opennlp.tools.parser.Parser;
 import opennlp.tools.parser.ParserFactory;
 import opennlp.tools.parser.ParserModel;
-import opennlp.tools.postag.POSModel;
-import opennlp.tools.postag.POSTagger;
-import opennlp.tools.postag.POSTaggerME;
+import opennlp.tools.parser.ParserType;
 import opennlp.tools.sentdetect.SentenceDetector;
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
@@ -37,74 +33,173 @@ import opennlp.tools.tokenize.TokenizerME;
 import opennlp.tools.tokenize.TokenizerModel;
 import opennlp.tools.util.Span;
 
+import org.liicornell.cfr.metrics.Events;
+import org.liicornell.cfr.rdf.ConcurrentTripleSink;
 import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.runner.ParseBudget;
 import org.liicornell.cfr.runner.Runner;
 
+/**
+ * Wraps the OpenNLP tools. The models are loaded in the background when first needed, and every thread shares them.
+ * The detector, tokenizer and parser built from them are not thread-safe, so each thread gets its own set through
+ * {@link #getInstance()}.
+ * @author Caleb Perkins
+ *
+ */
 public class OpenNLPPipeline {
-	private static OpenNLPPipeline instance;
+	private static final ThreadLocal<OpenNLPPipeline> instances = new ThreadLocal<OpenNLPPipeline>() {
+		@Override
+		protected OpenNLPPipeline initialValue() {
+			return new OpenNLPPipeline();
+		}
+	};
 
-	private final static TokenizerModel tokenModel;
-	private final static SentenceModel sentenceModel;
-	private final static ParserModel parseModel;
-	private final static POSModel posModel;
+	private static final ModelLoader<TokenizerModel> tokenModel = new ModelLoader<TokenizerModel>("en-token.bin") {
+		@Override
+		protected TokenizerModel read(InputStream in) throws IOException {
+			return new TokenizerModel(in);
+		}
+	};
+	private static final ModelLoader<SentenceModel> sentenceModel = new ModelLoader<SentenceModel>("en-sent.bin") {
+		@Override
+		protected SentenceModel read(InputStream in) throws IOException {
+			return new SentenceModel(in);
+		}
+	};
+	private static final ModelLoader<ParserModel> parseModel = new ModelLoader<ParserModel>("en-parser-chunking.bin") {
+		@Override
+		protected ParserModel read(InputStream in) throws IOException {
+			return new ParserModel(in);
+		}
+	};
+
+	/**
+	 * The coreference linker holds all of datasets/coref, so it is shared by every thread.
+	 */
+	private static Linker linker;
 
 	private final SentenceDetector sentenceDetector;
 	private final Tokenizer tokenizer;
-	private final Parser parser;
-	private final Linker linker;
-	@SuppressWarnings("unused")
-	private final POSTagger tagger;
+	private final int beamSize;
+	/**
+	 * Created on the first parse, so that threads which only split text never wait for the parser model.
+	 */
+	private Parser parser;
 
-	static {
-		try {
-			// tokens
-			InputStream modelIn = getModel("en-token.bin");
-			tokenModel = new TokenizerModel(modelIn);
-			modelIn.close();
-
-			// sentence model
-			modelIn = getModel("en-sent.bin");
-			sentenceModel = new SentenceModel(modelIn);
-			modelIn.close();
-
-			// parser
-			modelIn = getModel("en-parser-chunking.bin");
-			parseModel = new ParserModel(modelIn);
-			modelIn.close();
-			
-			// part-of-speech model. not currently used
-			modelIn = getModel("en-pos-maxent.bin");
-			posModel = new POSModel(modelIn);
-			modelIn.close();		
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+	/**
+	 * Start loading the models in the background, all at once, so that they are ready sooner than if they were loaded
+	 * one after another when first used.
+	 * @param parse whether the parser model will be needed, not just the sentence detector and tokenizer
+	 */
+	public static void warmUp(boolean parse) {
+		sentenceModel.start();
+		tokenModel.start();
+		if (parse) {
+			parseModel.start();
 		}
 	}
-	
-	private static InputStream getModel(String fileName) throws FileNotFoundException {
-		File in = new File(Runner.DATASETS_PATH, fileName);
-		return new FileInputStream(in);
+
+	/**
+	 * Load the models now and wait for them, so that the first sentence is not held up. Models this JVM has already
+	 * loaded are not loaded again.
+	 * @param parse whether to load the parser model, not just the sentence detector and tokenizer
+	 * @param coref whether to load the coreference linker
+	 */
+	public static void load(boolean parse, boolean coref) {
+		warmUp(parse);
+		sentenceModel.get();
+		tokenModel.get();
+		if (parse) {
+			parseModel.get();
+		}
+		if (coref) {
+			getLinker();
+		}
 	}
 
-	public static synchronized OpenNLPPipeline getInstance() {
-		if (instance == null) {
-			System.out.println("Initializing NLP pipeline...");
-			instance = new OpenNLPPipeline();
-			System.out.println("Done initializing.");
+	/**
+	 * @return the pipeline confined to the calling thread
+	 */
+	public static OpenNLPPipeline getInstance() {
+		return instances.get();
+	}
+
+	private static synchronized Linker getLinker() {
+		if (linker == null) {
+			try {
+				File path = new File(Runner.DATASETS_PATH, "coref");
+				linker = new DefaultLinker(path.getAbsolutePath(), LinkerMode.TEST);
+			} catch (Exception ex) {
+				throw new RuntimeException(ex);
+			}
 		}
-		return instance;
+		return linker;
 	}
 
 	private OpenNLPPipeline() {
-		sentenceDetector = new SentenceDetectorME(sentenceModel);
-		tokenizer = new TokenizerME(tokenModel);
-		parser = ParserFactory.create(parseModel);
-		tagger = new POSTaggerME(posModel);
+		warmUp(false);
+		sentenceDetector = new SentenceDetectorME(sentenceModel.get());
+		tokenizer = new TokenizerME(tokenModel.get());
+		beamSize = ParseBudget.get().beamSize > 0 ? ParseBudget.get().beamSize : AbstractBottomUpParser.defaultBeamSize;
+	}
+
+	private Parser getParser() {
+		if (parser == null) {
+			parser = createParser(parseModel.get(), beamSize);
+		}
+		return parser;
+	}
+
+	private static Parser createParser(ParserModel model, int beamSize) {
+		if (model.getParserType() == ParserType.CHUNKING) {
+			return new BudgetedParser(model, beamSize);
+		}
+		return ParserFactory.create(model, beamSize, AbstractBottomUpParser.defaultAdvancePercentage);
+	}
+
+	/**
+	 * Create parse trees from a sentence, giving up after a while.
+	 * @param text the sentence string
+	 * @param tokens an array of spans with token positions
+	 * @param n how many parse trees to return
+	 * @param timeoutMillis how long to try for, or 0 for as long as it takes
+	 * @return an array of probable parse trees, or null if the time ran out
+	 */
+	public Parse[] parseSentence(final String text, final Span[] tokens, final int n, final long timeoutMillis) {
+		return parseSentence(text, tokens, n, timeoutMillis, null);
+	}
+
+	/**
+	 * Create parse trees from a sentence, giving up after a while, and record a parse event.
+	 * @param text the sentence string
+	 * @param tokens an array of spans with token positions
+	 * @param n how many parse trees to return
+	 * @param timeoutMillis how long to try for, or 0 for as long as it takes
+	 * @param source where the sentence came from, for the event
+	 * @return an array of probable parse trees, or null if the time ran out
+	 */
+	public Parse[] parseSentence(final String text, final Span[] tokens, final int n, final long timeoutMillis,
+			final String source) {
+		Events events = Events.get();
+		Object event = events.beginParse();
+		Parse[] parses = parseWithTimeout(text, tokens, n, timeoutMillis);
+		events.endParse(event, source, text.length(), tokens.length, beamSize, parses == null);
+		return parses;
+	}
+
+	private Parse[] parseWithTimeout(final String text, final Span[] tokens, final int n, final long timeoutMillis) {
+		Parser parser = getParser();
+		if (timeoutMillis <= 0 || !(parser instanceof BudgetedParser)) {
+			return parseSentence(text, tokens, n);
+		}
+		BudgetedParser budgeted = (BudgetedParser) parser;
+		budgeted.setTimeout(timeoutMillis);
 		try {
-			File path = new File(Runner.DATASETS_PATH, "coref");
-			linker = new DefaultLinker(path.getAbsolutePath(), LinkerMode.TEST);
-		} catch (Exception ex) {
-			throw new RuntimeException(ex);
+			return parseSentence(text, tokens, n);
+		} catch (BudgetedParser.OutOfTimeException ex) {
+			return null;
+		} finally {
+			budgeted.setTimeout(0);
 		}
 	}
 
@@ -131,10 +226,7 @@ public class OpenNLPPipeline {
 			// flesh out the parse with token sub-parses
 			p.insert(new Parse(text, tok, AbstractBottomUpParser.TOK_NODE, 0, idx));
 		}
-		synchronized (parser) {
-			return parser.parse(p, n);
-		}
-
+		return getParser().parse(p, n);
 	}
 	
 	public Parse parseSentence(final String text, final Span[] tokens) {
@@ -151,6 +243,8 @@ public class OpenNLPPipeline {
 		// tokens should correspond to sentences
 		assert sentences.length == tokens.length;
 
+		final Linker linker = getLinker();
+
 		// list of document mentions
 		final List<Mention> document = new ArrayList<Mention>();
 
@@ -159,7 +253,10 @@ public class OpenNLPPipeline {
 			final Parse parse = parseSentence(sentences[i], tokens[i]);
 
 			final DefaultParse parseWrapper = new DefaultParse(parse, i);
-			final Mention[] extents = linker.getMentionFinder().getMentions(parseWrapper);
+			final Mention[] extents;
+			synchronized (linker) {
+				extents = linker.getMentionFinder().getMentions(parseWrapper);
+			}
 
 			// Note: taken from TreebankParser source...
 			for (int ei = 0, en = extents.length; ei < en; ei++) {
@@ -187,9 +284,9 @@ public class OpenNLPPipeline {
 	}
 	
 	public Set<Triple> generateTriples(String text) {
-		Set<Triple> triples = new HashSet<Triple>();
+		ConcurrentTripleSink triples = new ConcurrentTripleSink(1);
 		new OpenNLPTripleGenerator(triples, text).run();
-		return triples;
+		return triples.triples();
 	}
 
 	public String resolvePronouns(String text) {
@@ -226,17 +323,13 @@ public class OpenNLPPipeline {
 	}
 	
 	public String[] getSentences(String text) {
-		synchronized (sentenceDetector) {
-			return sentenceDetector.sentDetect(text);
-		}
+		return sentenceDetector.sentDetect(text);
 	}
 	
 	public Span[][] getTokens(String[] sentences) {
 		Span[][] tokens = new Span[sentences.length][];
-		synchronized (tokenizer) {
-			for (int i = 0; i < tokens.length; i++) {
-				tokens[i] = tokenizer.tokenizePos(sentences[i]);
-			}
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = tokenizer.tokenizePos(sentences[i]);
 		}
 		return tokens;
 	}
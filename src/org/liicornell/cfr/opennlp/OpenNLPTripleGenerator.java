@@ -1,11 +1,24 @@
 package org.liicornell.cfr.opennlp;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.liicornell.cfr.cache.SentenceCache;
+import org.liicornell.cfr.cache.TripleCache;
+import org.liicornell.cfr.metrics.Events;
+import org.liicornell.cfr.metrics.Metrics;
+import org.liicornell.cfr.metrics.Stage;
+import org.liicornell.cfr.metrics.StageMetrics;
+import org.liicornell.cfr.preprocessor.Gazetteer;
 import org.liicornell.cfr.preprocessor.Preprocessor;
+import org.liicornell.cfr.rdf.BufferedTripleSink;
 import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleSink;
+import org.liicornell.cfr.runner.ParseBudget;
+import org.liicornell.cfr.runner.SentenceTask;
 
 import opennlp.tools.parser.Parse;
 import opennlp.tools.util.Span;
@@ -15,17 +28,123 @@ import opennlp.tools.util.Span;
  * @author Caleb Perkins
  *
  */
-public class OpenNLPTripleGenerator implements Runnable {
-	private final Set<Triple> triples;
+public class OpenNLPTripleGenerator implements SentenceTask {
+	/**
+	 * Identifies the models and extraction rules, for caches that outlive a run. Change it whenever either changes.
+	 */
+	public static final String VERSION = "opennlp-1.5.2/en-parser-chunking/1";
+
+	/**
+	 * The name of this pipeline in {@link Metrics}.
+	 */
+	public static final String PARSER = "opennlp";
+
+	private static final StageMetrics PREPROCESS = Metrics.get(PARSER, Stage.PREPROCESS);
+	private static final StageMetrics SENTENCES = Metrics.get(PARSER, Stage.SENTENCES);
+	private static final StageMetrics TOKENIZE = Metrics.get(PARSER, Stage.TOKENIZE);
+	private static final StageMetrics PARSE = Metrics.get(PARSER, Stage.PARSE);
+	private static final StageMetrics TRAVERSE = Metrics.get(PARSER, Stage.TRAVERSE);
+	private static final StageMetrics DEDUP = Metrics.get(PARSER, Stage.DEDUP);
+
+	private final BufferedTripleSink sink;
+	/**
+	 * The triples of the sentence being traversed.
+	 */
+	private final Set<Triple> triples = new HashSet<Triple>();
 	private String[] sentences;
 	private Span[][] tokens;
 	private String text;
+	private String source;
 
-	public OpenNLPTripleGenerator(Set<Triple> triples, String t) {
-		this.triples = triples;
+	/**
+	 * @param triples where to put the triples
+	 * @param t a raw block of text, which is preprocessed and split into sentences when this generator runs
+	 */
+	public OpenNLPTripleGenerator(TripleSink triples, String t) {
+		this.sink = new BufferedTripleSink(triples);
 		text = t;
 	}
 
+	private OpenNLPTripleGenerator(TripleSink triples, String sentence, Span[] spans, String source) {
+		this.sink = new BufferedTripleSink(triples);
+		this.source = source;
+		sentences = new String[] { sentence };
+		tokens = new Span[][] { spans };
+	}
+
+	/**
+	 * Preprocess a raw block of text and split it into sentences, so that each one can be parsed separately.
+	 * @param triples where the generators put their triples
+	 * @param text a raw block of text
+	 * @return a generator for each sentence
+	 */
+	public static List<OpenNLPTripleGenerator> split(TripleSink triples, String text) {
+		return split(triples, text, null);
+	}
+
+	/**
+	 * Preprocess a raw block of text and split it into sentences, so that each one can be parsed separately.
+	 * @param triples where the generators put their triples
+	 * @param text a raw block of text
+	 * @param source where the text came from, such as a file and element, for Flight Recorder events
+	 * @return a generator for each sentence
+	 */
+	public static List<OpenNLPTripleGenerator> split(TripleSink triples, String text, String source) {
+		return split(triples, text, Preprocessor.defaultGazetteer(), source);
+	}
+
+	/**
+	 * Preprocess a raw block of text and split it into sentences, so that each one can be parsed separately.
+	 * @param triples where the generators put their triples
+	 * @param text a raw block of text
+	 * @param gazetteer the agency and act names to replace, or null to leave them alone
+	 * @param source where the text came from, such as a file and element, for Flight Recorder events
+	 * @return a generator for each sentence
+	 */
+	public static List<OpenNLPTripleGenerator> split(TripleSink triples, String text, Gazetteer gazetteer,
+			String source) {
+		String[] sentences = getSentences(text, gazetteer);
+		if (sentences.length == 0)
+			return Collections.emptyList();
+		Span[][] tokens = getTokens(sentences);
+		List<OpenNLPTripleGenerator> generators = new ArrayList<OpenNLPTripleGenerator>(sentences.length);
+		for (int i = 0; i < sentences.length; i++) {
+			generators.add(new OpenNLPTripleGenerator(triples, sentences[i], tokens[i], source));
+		}
+		return generators;
+	}
+
+	private static String[] getSentences(String text, Gazetteer gazetteer) {
+		long start = System.nanoTime();
+		text = Preprocessor.preprocessText(text, gazetteer);
+		PREPROCESS.record(start);
+		start = System.nanoTime();
+		String[] sentences = OpenNLPPipeline.getInstance().getSentences(text);
+		SENTENCES.record(start, sentences.length);
+		return sentences;
+	}
+
+	private static Span[][] getTokens(String[] sentences) {
+		long start = System.nanoTime();
+		Span[][] tokens = OpenNLPPipeline.getInstance().getTokens(sentences);
+		TOKENIZE.record(start, sentences.length);
+		return tokens;
+	}
+
+	/**
+	 * @return the number of tokens this generator will parse, or 0 if it has not been split into sentences yet
+	 */
+	@Override
+	public int tokenCount() {
+		if (tokens == null)
+			return 0;
+		int count = 0;
+		for (Span[] spans : tokens) {
+			count += spans.length;
+		}
+		return count;
+	}
+
 	protected static Parse getType(Parse p, String type) {
 		if (p == null)
 			return null;
@@ -57,10 +176,8 @@ public class OpenNLPTripleGenerator implements Runnable {
 				continue;
 			Triple t = Triple.narrower(main.toString(), c.toString() + ' ' + main.toString());
 			Triple tt = t.inversion();
-			synchronized (triples) {
-				triples.add(tt);
-				triples.add(t);
-			}
+			triples.add(tt);
+			triples.add(t);
 		}
 		
 	}
@@ -85,9 +202,7 @@ public class OpenNLPTripleGenerator implements Runnable {
 				if (a.equals(b))
 					continue;
 				Triple t = Triple.related(a.toString(), b.toString());
-				synchronized (triples) {
-					triples.add(t);
-				}
+				triples.add(t);
 			}
 		}
 	}
@@ -186,10 +301,8 @@ public class OpenNLPTripleGenerator implements Runnable {
 		for (Parse a : attributes) {
 			Triple t = Triple.narrower(main.toString(), a.toString() + ' ' + main.toString());
 			Triple tt = t.inversion();
-			synchronized (triples) {
-				triples.add(t);
-				triples.add(tt);
-			}
+			triples.add(t);
+			triples.add(tt);
 		}
 	}
 
@@ -239,9 +352,7 @@ public class OpenNLPTripleGenerator implements Runnable {
 		Triple t = Triple.lii(subject.toString(), object.toString(), verb.toString());
 		if (t.predicate.isEmpty())
 			return;
-		synchronized (triples) {
-			triples.add(t);
-		}
+		triples.add(t);
 	}
 
 	private static Parse getSubject(Parse root) {
@@ -306,15 +417,37 @@ public class OpenNLPTripleGenerator implements Runnable {
 
 	@Override
 	public void run() {
-		text = Preprocessor.preprocessText(text);
-//		System.out.println(text);
-		sentences = OpenNLPPipeline.getInstance().getSentences(text);
-		tokens = OpenNLPPipeline.getInstance().getTokens(sentences);
+		if (sentences == null) {
+			sentences = getSentences(text, Preprocessor.defaultGazetteer());
+			tokens = getTokens(sentences);
+		}
+		ParseBudget budget = ParseBudget.get();
+		TripleCache cache = SentenceCache.get();
 		for (int i = 0; i < sentences.length; i++) {
 			String sentence = sentences[i];
+			if (cache != null) {
+				List<Triple> cached = cache.get(sentence);
+				if (cached != null) {
+					sink.addAll(cached);
+					continue;
+				}
+			}
 			Span[] spans = tokens[i];
-			Parse[] parses = OpenNLPPipeline.getInstance().parseSentence(sentence, spans, 2);
+			if (budget.maxTokens > 0 && spans.length > budget.maxTokens) {
+				ParseBudget.record(sentence, spans.length + " tokens");
+				continue;
+			}
+			long start = System.nanoTime();
+			Parse[] parses = OpenNLPPipeline.getInstance().parseSentence(sentence, spans, 2, budget.timeoutMillis,
+					source);
+			PARSE.record(start);
+			if (parses == null) {
+				ParseBudget.record(sentence, "over " + budget.timeoutMillis + " ms");
+				continue;
+			}
 			
+			start = System.nanoTime();
+			Object event = Events.get().beginTraverse();
 			for (Parse p : parses) {
 				if (!is(p.getChildren()[0], "S"))
 					continue;
@@ -323,8 +456,19 @@ public class OpenNLPTripleGenerator implements Runnable {
 				traverse(p);
 				break;
 			}
+			TRAVERSE.record(start);
+			Events.get().endTraverse(event, source, sentence.length(), spans.length, triples.size());
+			if (cache != null) {
+				cache.put(sentence, triples);
+			}
+			start = System.nanoTime();
+			sink.addAll(triples);
+			DEDUP.record(start, triples.size());
+			triples.clear();
 		}
-
+		long start = System.nanoTime();
+		sink.flush();
+		DEDUP.record(start, 0);
 	}
 
 }
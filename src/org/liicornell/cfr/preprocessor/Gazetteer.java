@@ -0,0 +1,225 @@
+package org.liicornell.cfr.preprocessor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Replaces every occurrence of a fixed list of phrases, such as agency or act names, in a single pass over the text,
+ * using an Aho-Corasick automaton built once from the list. The cost of a lookup depends on the length of the text,
+ * not on the number of phrases, so lists of thousands of acts are fine.
+ * 
+ * Phrases are matched literally and case-sensitively. Where matches overlap, the leftmost one wins, and among those
+ * the longest, so "Library of Congress" is replaced as a whole rather than as "Library of" plus "Congress".
+ * 
+ * Instances are immutable and can be shared between threads. Use {@link #load(Map)} to build one from phrase files
+ * only once per JVM.
+ */
+public class Gazetteer {
+	private static class Node {
+		final Map<Character, Node> children = new HashMap<Character, Node>();
+		final int depth;
+		Node fail;
+		/**
+		 * The length of the longest phrase that ends at this node, or 0 if none does.
+		 */
+		int matchLength;
+		/**
+		 * What to replace that phrase with.
+		 */
+		String replacement;
+
+		Node(int depth) {
+			this.depth = depth;
+		}
+	}
+
+	private static final Map<Map<String, String>, Gazetteer> loaded = new HashMap<Map<String, String>, Gazetteer>();
+
+	private final Node root = new Node(0);
+	private final int size;
+
+	/**
+	 * @param phrases the phrases to look for. Empty phrases are ignored.
+	 * @param replacement what to replace each of them with
+	 */
+	public Gazetteer(Collection<String> phrases, String replacement) {
+		this(withReplacement(phrases, replacement));
+	}
+
+	/**
+	 * @param replacements a mapping of phrases to what to replace them with. Empty phrases are ignored.
+	 */
+	public Gazetteer(Map<String, String> replacements) {
+		int count = 0;
+		for (Map.Entry<String, String> entry : replacements.entrySet()) {
+			String phrase = entry.getKey();
+			if (phrase.isEmpty())
+				continue;
+			Node node = root;
+			for (int i = 0; i < phrase.length(); i++) {
+				Character c = phrase.charAt(i);
+				Node next = node.children.get(c);
+				if (next == null) {
+					next = new Node(node.depth + 1);
+					node.children.put(c, next);
+				}
+				node = next;
+			}
+			if (node.matchLength == 0)
+				count++;
+			node.matchLength = node.depth;
+			node.replacement = entry.getValue();
+		}
+		size = count;
+		buildFailureLinks();
+	}
+
+	private static Map<String, String> withReplacement(Collection<String> phrases, String replacement) {
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		for (String phrase : phrases) {
+			map.put(phrase, replacement);
+		}
+		return map;
+	}
+
+	/**
+	 * Build a gazetteer from files with one phrase per line. Asking again for the same files returns the same
+	 * instance, so the automaton is only built once per JVM. If a phrase appears in more than one file, the first
+	 * file wins.
+	 * @param files a mapping of phrase files to what to replace their phrases with, in order
+	 * @return the gazetteer
+	 * @throws IOException if a file cannot be read
+	 */
+	public static Gazetteer load(Map<File, String> files) throws IOException {
+		Map<String, String> key = new LinkedHashMap<String, String>();
+		for (Map.Entry<File, String> e : files.entrySet()) {
+			key.put(e.getKey().getCanonicalPath(), e.getValue());
+		}
+		synchronized (loaded) {
+			Gazetteer gazetteer = loaded.get(key);
+			if (gazetteer == null) {
+				Map<String, String> replacements = new LinkedHashMap<String, String>();
+				for (Map.Entry<File, String> e : files.entrySet()) {
+					BufferedReader br = new BufferedReader(new FileReader(e.getKey()));
+					try {
+						String phrase;
+						while ((phrase = br.readLine()) != null) {
+							if (!replacements.containsKey(phrase)) {
+								replacements.put(phrase, e.getValue());
+							}
+						}
+					} finally {
+						br.close();
+					}
+				}
+				gazetteer = new Gazetteer(replacements);
+				loaded.put(key, gazetteer);
+			}
+			return gazetteer;
+		}
+	}
+
+	private void buildFailureLinks() {
+		Queue<Node> queue = new ArrayDeque<Node>();
+		root.fail = root;
+		for (Node child : root.children.values()) {
+			child.fail = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.remove();
+			for (Map.Entry<Character, Node> e : node.children.entrySet()) {
+				Node child = e.getValue();
+				Node f = node.fail;
+				while (f != root && !f.children.containsKey(e.getKey())) {
+					f = f.fail;
+				}
+				Node target = f.children.get(e.getKey());
+				child.fail = target == null ? root : target;
+				if (child.matchLength == 0) {
+					child.matchLength = child.fail.matchLength;
+					child.replacement = child.fail.replacement;
+				}
+				queue.add(child);
+			}
+		}
+	}
+
+	private Node step(Node node, char c) {
+		while (true) {
+			Node next = node.children.get(c);
+			if (next != null)
+				return next;
+			if (node == root)
+				return root;
+			node = node.fail;
+		}
+	}
+
+	/**
+	 * @return the number of distinct phrases
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Append the text to a buffer with every phrase replaced.
+	 * @param text the text to search
+	 * @param out where to write the result
+	 */
+	public void replace(CharSequence text, StringBuilder out) {
+		final int n = text.length();
+		Node node = root;
+		// everything before committed has been written to out
+		int committed = 0;
+		// the leftmost, then longest, match that has not been written yet
+		int bestStart = -1;
+		int bestEnd = -1;
+		String bestReplacement = null;
+		int i = 0;
+		while (true) {
+			if (i < n) {
+				node = step(node, text.charAt(i++));
+				if (node.matchLength > 0) {
+					int start = i - node.matchLength;
+					if (bestStart < 0 || start < bestStart || (start == bestStart && i > bestEnd)) {
+						bestStart = start;
+						bestEnd = i;
+						bestReplacement = node.replacement;
+					}
+				}
+				// no match that is still being read can start at or before the best one
+				if (bestStart < 0 || i - node.depth <= bestStart)
+					continue;
+			} else if (bestStart < 0) {
+				break;
+			}
+			out.append(text, committed, bestStart).append(bestReplacement);
+			committed = bestEnd;
+			// resume right after the replaced phrase
+			i = bestEnd;
+			node = root;
+			bestStart = -1;
+		}
+		out.append(text, committed, n);
+	}
+
+	/**
+	 * @param text the text to search
+	 * @return the text with every phrase replaced
+	 */
+	public String replace(CharSequence text) {
+		StringBuilder out = new StringBuilder(text.length());
+		replace(text, out);
+		return out.toString();
+	}
+}
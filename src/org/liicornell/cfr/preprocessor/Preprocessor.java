@@ -1,10 +1,9 @@
 package org.liicornell.cfr.preprocessor;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.liicornell.cfr.runner.Runner;
 
@@ -14,51 +13,63 @@ import org.liicornell.cfr.runner.Runner;
  *
  */
 public class Preprocessor {
-	public static final Collection<String> agenciesToRemove = new ArrayList<String>();
+	/**
+	 * What agency names are replaced with.
+	 */
+	public static final String AGENCY = "Agency";
+	/**
+	 * What act names are replaced with.
+	 */
+	public static final String ACT = "Act";
+
+	private static Gazetteer defaultGazetteer;
 
-	static {
-		try {
-			File agencies = new File(Runner.DATASETS_PATH, "agencies.txt");
-			BufferedReader fis = new BufferedReader(new FileReader(agencies));
-			String agency = null;
-			while ((agency = fis.readLine()) != null) {
-				agenciesToRemove.add(agency);
+	private static final ThreadLocal<TextCleaner> cleaners = new ThreadLocal<TextCleaner>() {
+		@Override
+		protected TextCleaner initialValue() {
+			return new TextCleaner();
+		}
+	};
+
+	/**
+	 * The gazetteer used by {@link #preprocessText(String)}: agencies.txt from the datasets folder, plus acts.txt if
+	 * it exists. Loaded on first use.
+	 * @return the agency and act gazetteer
+	 */
+	public static synchronized Gazetteer defaultGazetteer() {
+		if (defaultGazetteer == null) {
+			Map<File, String> files = new LinkedHashMap<File, String>();
+			files.put(new File(Runner.DATASETS_PATH, "agencies.txt"), AGENCY);
+			File acts = new File(Runner.DATASETS_PATH, "acts.txt");
+			if (acts.exists()) {
+				files.put(acts, ACT);
+			}
+			try {
+				defaultGazetteer = Gazetteer.load(files);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
 			}
-			fis.close();
-		} catch (Exception ex) {
-			throw new RuntimeException(ex);
 		}
+		return defaultGazetteer;
 	}
 
 	/**
-	 * Clean up the raw XML text
+	 * Clean up the raw XML text: remove tags, parentheticals and numbers, normalize punctuation and replace agency
+	 * and act names. See {@link TextCleaner}.
 	 * @param text raw XML text from the CFR
 	 * @return a cleaned up string that contains the sentences contained in the text
 	 */
 	public static String preprocessText(String text) {
-		// Remove anything in <>
-		text = text.replaceAll("\\<.*?\\>", "");
-		// Remove and\or and/or
-		text = text.replace("and/or", "or");
-		text = text.replace("and\\or", "or");
-		text = text.replaceAll("\n", "");
-		text = text.replaceAll("( )+", " ");
-		text = text.replaceAll("|", "Section");
-		text = text.replaceAll(";|:", ".");
-
-		text = text.replaceAll("\\(.*\\)", ""); // Remove (X) and ()
-		text = text.replaceAll("\\d+(\\.*)", ""); // Remove numbers
-
-		text = text.replaceAll("|", "\"");
-
-		// Replace oxford comma
-		text = text.replaceAll(", or", " or");
-		text = text.replaceAll(", and", " and");
-
-		for (String agency : agenciesToRemove) {
-			text = text.replaceAll(agency, "Agency");
-		}
+		return preprocessText(text, defaultGazetteer());
+	}
 
-		return text;
+	/**
+	 * Clean up the raw XML text, replacing names from the given gazetteer.
+	 * @param text raw XML text from the CFR
+	 * @param gazetteer the agency and act names to replace, or null to leave them alone
+	 * @return a cleaned up string that contains the sentences contained in the text
+	 */
+	public static String preprocessText(String text, Gazetteer gazetteer) {
+		return cleaners.get().clean(text, gazetteer);
 	}
 }
@@ -0,0 +1,327 @@
+package org.liicornell.cfr.preprocessor;
+
+/**
+ * The cleaning rules of {@link Preprocessor#preprocessText(String)}, compiled into a chain of character filters.
+ * 
+ * The rules used to be a series of regular expression replacements, each making a new copy of the text. Here the rules
+ * that only need to look at a few characters at a time are applied together in one scan, in the same order as
+ * before, and the buffers are reused from one call to the next. The output is the same.
+ * 
+ * Instances are not thread-safe; give each thread its own.
+ */
+public class TextCleaner {
+	private final StringBuilder first = new StringBuilder();
+	private final StringBuilder second = new StringBuilder();
+	private final StringBuilder result = new StringBuilder();
+
+	/**
+	 * Removes tags, "and/or", newlines and repeated spaces and normalizes punctuation. Writes to {@link #first}.
+	 */
+	private final Filter firstPass;
+	/**
+	 * Removes numbers and Oxford commas. Writes to {@link #second}.
+	 */
+	private final Filter secondPass;
+
+	public TextCleaner() {
+		firstPass = new Tags(new Replace("and/or", "or", new Replace("and\\or", "or", new Punctuation(
+				new Append(first)))));
+		secondPass = new Numbers(new Replace(", or", " or", new Replace(", and", " and", new Append(second))));
+	}
+
+	/**
+	 * Clean up a block of raw XML text.
+	 * @param text the raw text
+	 * @param gazetteer the agency and act names to replace, or null to leave them alone
+	 * @return the cleaned text
+	 */
+	public String clean(CharSequence text, Gazetteer gazetteer) {
+		return cleanBuffered(text, gazetteer).toString();
+	}
+
+	/**
+	 * Clean up a block of raw XML text without making a string of the result.
+	 * @param text the raw text
+	 * @param gazetteer the agency and act names to replace, or null to leave them alone
+	 * @return the cleaned text, in a buffer that the next call to this cleaner overwrites
+	 */
+	public CharSequence cleanBuffered(CharSequence text, Gazetteer gazetteer) {
+		first.setLength(0);
+		second.setLength(0);
+		result.setLength(0);
+
+		for (int i = 0, n = text.length(); i < n; i++) {
+			firstPass.put(text.charAt(i));
+		}
+		firstPass.finish();
+
+		removeParentheticals(first, secondPass);
+		secondPass.finish();
+
+		if (gazetteer == null) {
+			return second;
+		}
+		gazetteer.replace(second, result);
+		return result;
+	}
+
+	/**
+	 * On each line, remove everything from the first "(" to the last ")", like the greedy pattern "\(.*\)" does.
+	 */
+	private static void removeParentheticals(CharSequence text, Filter next) {
+		final int n = text.length();
+		int lineStart = 0;
+		while (lineStart < n) {
+			int lineEnd = lineStart;
+			while (lineEnd < n && !isLineTerminator(text.charAt(lineEnd))) {
+				lineEnd++;
+			}
+
+			int close = lineEnd - 1;
+			while (close >= lineStart && text.charAt(close) != ')') {
+				close--;
+			}
+			int open = lineStart;
+			while (open < close && text.charAt(open) != '(') {
+				open++;
+			}
+			boolean found = open < close;
+
+			for (int i = lineStart; i < lineEnd; i++) {
+				if (found && i >= open && i <= close)
+					continue;
+				next.put(text.charAt(i));
+			}
+			if (lineEnd < n) {
+				next.put(text.charAt(lineEnd));
+			}
+			lineStart = lineEnd + 1;
+		}
+	}
+
+	/**
+	 * The characters that "." in a regular expression does not match.
+	 */
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static abstract class Filter {
+		abstract void put(char c);
+
+		abstract void finish();
+	}
+
+	private static abstract class Chained extends Filter {
+		protected final Filter next;
+
+		Chained(Filter next) {
+			this.next = next;
+		}
+
+		protected void put(CharSequence s) {
+			for (int i = 0; i < s.length(); i++) {
+				next.put(s.charAt(i));
+			}
+		}
+
+		@Override
+		void finish() {
+			next.finish();
+		}
+	}
+
+	private static class Append extends Filter {
+		private final StringBuilder out;
+
+		Append(StringBuilder out) {
+			this.out = out;
+		}
+
+		@Override
+		void put(char c) {
+			out.append(c);
+		}
+
+		@Override
+		void finish() {
+		}
+	}
+
+	/**
+	 * Removes anything in &lt;&gt; on a single line, like the pattern "\&lt;.*?\&gt;".
+	 */
+	private static class Tags extends Chained {
+		private final StringBuilder pending = new StringBuilder();
+		private boolean inTag = false;
+
+		Tags(Filter next) {
+			super(next);
+		}
+
+		@Override
+		void put(char c) {
+			if (!inTag) {
+				if (c == '<') {
+					inTag = true;
+				} else {
+					next.put(c);
+				}
+			} else if (c == '>') {
+				inTag = false;
+				pending.setLength(0);
+			} else if (isLineTerminator(c)) {
+				// there is no ">" before the end of the line, so neither this "<" nor any after it starts a tag
+				abandon();
+				next.put(c);
+			} else {
+				pending.append(c);
+			}
+		}
+
+		private void abandon() {
+			next.put('<');
+			put(pending);
+			pending.setLength(0);
+			inTag = false;
+		}
+
+		@Override
+		void finish() {
+			if (inTag) {
+				abandon();
+			}
+			super.finish();
+		}
+	}
+
+	/**
+	 * Replaces every occurrence of a literal string, left to right, like {@link String#replace(CharSequence, CharSequence)}.
+	 */
+	private static class Replace extends Chained {
+		private final String target;
+		private final String replacement;
+		/**
+		 * failure[j] is the length of the longest proper prefix of target[0, j) that is also its suffix.
+		 */
+		private final int[] failure;
+		private int matched = 0;
+
+		Replace(String target, String replacement, Filter next) {
+			super(next);
+			this.target = target;
+			this.replacement = replacement;
+			failure = new int[target.length() + 1];
+			for (int j = 2, k = 0; j <= target.length(); j++) {
+				while (k > 0 && target.charAt(j - 1) != target.charAt(k)) {
+					k = failure[k];
+				}
+				if (target.charAt(j - 1) == target.charAt(k)) {
+					k++;
+				}
+				failure[j] = k;
+			}
+		}
+
+		@Override
+		void put(char c) {
+			while (matched > 0 && target.charAt(matched) != c) {
+				// the characters that can no longer be part of a match are passed on
+				int keep = failure[matched];
+				put(target.subSequence(0, matched - keep));
+				matched = keep;
+			}
+			if (target.charAt(matched) == c) {
+				matched++;
+				if (matched == target.length()) {
+					put(replacement);
+					matched = 0;
+				}
+			} else {
+				next.put(c);
+			}
+		}
+
+		@Override
+		void finish() {
+			put(target.subSequence(0, matched));
+			matched = 0;
+			super.finish();
+		}
+	}
+
+	/**
+	 * Removes newlines, collapses runs of spaces and normalizes section signs, semicolons, colons and curly quotes.
+	 */
+	private static class Punctuation extends Chained {
+		private boolean afterSpace = false;
+
+		Punctuation(Filter next) {
+			super(next);
+		}
+
+		@Override
+		void put(char c) {
+			if (c == '\n')
+				return;
+			if (c == ' ') {
+				if (!afterSpace)
+					next.put(c);
+				afterSpace = true;
+				return;
+			}
+			afterSpace = false;
+			switch (c) {
+			case '\u00df':
+			case '\u00a7':
+				put("Section");
+				break;
+			case ';':
+			case ':':
+				next.put('.');
+				break;
+			case '\u201c':
+			case '\u201d':
+				next.put('"');
+				break;
+			default:
+				next.put(c);
+			}
+		}
+
+		@Override
+		void finish() {
+			afterSpace = false;
+			super.finish();
+		}
+	}
+
+	/**
+	 * Removes numbers and any periods right after them, like the pattern "\d+(\.*)".
+	 */
+	private static class Numbers extends Chained {
+		private boolean inNumber = false;
+
+		Numbers(Filter next) {
+			super(next);
+		}
+
+		@Override
+		void put(char c) {
+			if (c >= '0' && c <= '9') {
+				inNumber = true;
+			} else if (c == '.' && inNumber) {
+				// drop it
+			} else {
+				inNumber = false;
+				next.put(c);
+			}
+		}
+
+		@Override
+		void finish() {
+			inNumber = false;
+			super.finish();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.liicornell.cfr.rdf;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A task-local buffer in front of a shared sink. Triples are de-duplicated locally and handed to the shared sink in
+ * batches, so a task touches the shared sink once per batch instead of once per triple.
+ * 
+ * This class is not thread-safe; each task should own its buffer and {@link #flush()} it when done.
+ */
+public class BufferedTripleSink implements TripleSink {
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private final TripleSink target;
+	private final int batchSize;
+	private final Set<Triple> buffer = new HashSet<Triple>();
+
+	public BufferedTripleSink(TripleSink target) {
+		this(target, DEFAULT_BATCH_SIZE);
+	}
+
+	public BufferedTripleSink(TripleSink target, int batchSize) {
+		this.target = target;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public void add(Triple triple) {
+		buffer.add(triple);
+		if (buffer.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	@Override
+	public void addAll(Collection<Triple> triples) {
+		for (Triple triple : triples) {
+			add(triple);
+		}
+	}
+
+	/**
+	 * Hand everything buffered so far to the shared sink.
+	 */
+	public void flush() {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		target.addAll(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,198 @@
+package org.liicornell.cfr.rdf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A thread-safe, de-duplicating sink that stores each triple as three term ids from a {@link TermDictionary} instead of
+ * as a {@link Triple} object. A triple costs about 20 bytes and every term is stored once, which is far less than a set
+ * of triples whose terms repeat throughout a title.
+ * 
+ * Triples are spread over independently locked stripes. Each stripe keeps the ids in parallel int arrays and finds
+ * duplicates with an open-addressed table of positions in those arrays. Iterating builds {@link Triple} objects one at
+ * a time; it sees the triples added before it started and should be done once adding is finished.
+ */
+public class CompactTripleStore implements TripleSink, Iterable<Triple> {
+	public static final int DEFAULT_STRIPES = 64;
+
+	private final TermDictionary terms;
+	private final Stripe[] stripes;
+
+	public CompactTripleStore() {
+		this(new TermDictionary(), DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param terms the dictionary to intern terms in, which may be shared with other stores
+	 * @param stripes the number of independently locked stripes, rounded up to a power of two
+	 */
+	public CompactTripleStore(TermDictionary terms, int stripes) {
+		this.terms = terms;
+		int n = 1;
+		while (n < stripes)
+			n <<= 1;
+		this.stripes = new Stripe[n];
+		for (int i = 0; i < n; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	@Override
+	public void add(Triple triple) {
+		int s = terms.id(triple.subject);
+		int p = terms.id(triple.predicate);
+		int o = terms.id(triple.object);
+		int hash = hash(s, p, o);
+		Stripe stripe = stripes[hash & (stripes.length - 1)];
+		synchronized (stripe) {
+			stripe.add(s, p, o, hash);
+		}
+	}
+
+	@Override
+	public void addAll(Collection<Triple> triples) {
+		for (Triple triple : triples) {
+			add(triple);
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the dictionary the terms are interned in
+	 */
+	public TermDictionary terms() {
+		return terms;
+	}
+
+	private static int hash(int s, int p, int o) {
+		int h = s * 0x9e3779b9 + p;
+		h = h * 0x9e3779b9 + o;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	@Override
+	public Iterator<Triple> iterator() {
+		// snapshot each stripe; its arrays are only ever appended to or replaced
+		final List<Slice> snapshot = new ArrayList<Slice>(stripes.length);
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				if (stripe.size > 0) {
+					snapshot.add(new Slice(stripe));
+				}
+			}
+		}
+		return new Iterator<Triple>() {
+			private int stripe = 0;
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return stripe < snapshot.size();
+			}
+
+			@Override
+			public Triple next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Slice slice = snapshot.get(stripe);
+				Triple t = Triple.raw(terms.term(slice.subjects[index]), terms.term(slice.objects[index]),
+						terms.term(slice.predicates[index]));
+				if (++index == slice.size) {
+					stripe++;
+					index = 0;
+				}
+				return t;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static class Slice {
+		final int[] subjects;
+		final int[] predicates;
+		final int[] objects;
+		final int size;
+
+		Slice(Stripe stripe) {
+			subjects = stripe.subjects;
+			predicates = stripe.predicates;
+			objects = stripe.objects;
+			size = stripe.size;
+		}
+	}
+
+	/**
+	 * Callers hold its lock.
+	 */
+	private static class Stripe {
+		int[] subjects = new int[16];
+		int[] predicates = new int[16];
+		int[] objects = new int[16];
+		int size = 0;
+		/**
+		 * Position + 1 of each triple, 0 for an empty slot.
+		 */
+		int[] table = new int[32];
+
+		void add(int s, int p, int o, int hash) {
+			int mask = table.length - 1;
+			// the low bits chose the stripe, so probe with the high ones
+			int i = (hash >>> 8) & mask;
+			while (table[i] != 0) {
+				int at = table[i] - 1;
+				if (subjects[at] == s && predicates[at] == p && objects[at] == o)
+					return;
+				i = (i + 1) & mask;
+			}
+			if (size == subjects.length) {
+				subjects = grow(subjects);
+				predicates = grow(predicates);
+				objects = grow(objects);
+			}
+			subjects[size] = s;
+			predicates[size] = p;
+			objects[size] = o;
+			table[i] = ++size;
+			if (size * 2 > table.length) {
+				rehash();
+			}
+		}
+
+		private static int[] grow(int[] array) {
+			int[] bigger = new int[array.length * 2];
+			System.arraycopy(array, 0, bigger, 0, array.length);
+			return bigger;
+		}
+
+		private void rehash() {
+			int[] bigger = new int[table.length * 2];
+			int mask = bigger.length - 1;
+			for (int at = 0; at < size; at++) {
+				int i = (hash(subjects[at], predicates[at], objects[at]) >>> 8) & mask;
+				while (bigger[i] != 0)
+					i = (i + 1) & mask;
+				bigger[i] = at + 1;
+			}
+			table = bigger;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package org.liicornell.cfr.rdf;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe, de-duplicating sink that every task of a file can share. Backed by a {@link ConcurrentHashMap}, so
+ * adds from different threads rarely contend with each other.
+ */
+public class ConcurrentTripleSink implements TripleSink, Iterable<Triple> {
+	private final Set<Triple> triples;
+
+	public ConcurrentTripleSink() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param concurrencyLevel the estimated number of threads adding at the same time
+	 */
+	public ConcurrentTripleSink(int concurrencyLevel) {
+		triples = Collections.newSetFromMap(new ConcurrentHashMap<Triple, Boolean>(1024, 0.75f, concurrencyLevel));
+	}
+
+	@Override
+	public void add(Triple triple) {
+		triples.add(triple);
+	}
+
+	@Override
+	public void addAll(Collection<Triple> batch) {
+		triples.addAll(batch);
+	}
+
+	/**
+	 * @return a read-only view of the triples collected so far
+	 */
+	public Set<Triple> triples() {
+		return Collections.unmodifiableSet(triples);
+	}
+
+	public int size() {
+		return triples.size();
+	}
+
+	@Override
+	public Iterator<Triple> iterator() {
+		return triples().iterator();
+	}
+}
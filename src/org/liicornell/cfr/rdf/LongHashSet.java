@@ -0,0 +1,89 @@
+package org.liicornell.cfr.rdf;
+
+/**
+ * A set of longs in a single open-addressed array, for de-duplicating by id without boxing. Not thread-safe.
+ */
+class LongHashSet {
+	/**
+	 * Marks an empty slot. The value 0 itself is tracked separately.
+	 */
+	private static final long EMPTY = 0;
+
+	private long[] slots;
+	private int size;
+	private boolean containsZero;
+
+	LongHashSet() {
+		this(1024);
+	}
+
+	LongHashSet(int expected) {
+		int capacity = 16;
+		while (capacity < expected * 2) {
+			capacity <<= 1;
+		}
+		slots = new long[capacity];
+	}
+
+	/**
+	 * @return true if the value was not already in the set
+	 */
+	boolean add(long value) {
+		if (value == EMPTY) {
+			if (containsZero)
+				return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+		if (!insert(slots, value))
+			return false;
+		if (++size * 2 > slots.length) {
+			grow();
+		}
+		return true;
+	}
+
+	boolean contains(long value) {
+		if (value == EMPTY)
+			return containsZero;
+		int mask = slots.length - 1;
+		for (int i = index(value, mask);; i = (i + 1) & mask) {
+			if (slots[i] == value)
+				return true;
+			if (slots[i] == EMPTY)
+				return false;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	private static boolean insert(long[] slots, long value) {
+		int mask = slots.length - 1;
+		for (int i = index(value, mask);; i = (i + 1) & mask) {
+			if (slots[i] == value)
+				return false;
+			if (slots[i] == EMPTY) {
+				slots[i] = value;
+				return true;
+			}
+		}
+	}
+
+	private static int index(long value, int mask) {
+		long h = value * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void grow() {
+		long[] bigger = new long[slots.length * 2];
+		for (long value : slots) {
+			if (value != EMPTY) {
+				insert(bigger, value);
+			}
+		}
+		slots = bigger;
+	}
+}
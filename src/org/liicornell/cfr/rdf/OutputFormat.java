@@ -0,0 +1,39 @@
+package org.liicornell.cfr.rdf;
+
+/**
+ * The serialisations the runners can write.
+ */
+public enum OutputFormat {
+	/**
+	 * RDF/XML, built in a Jena model by {@link RDFGenerator} once every triple of a file is known.
+	 */
+	RDFXML(".rdf"),
+	/**
+	 * N-Triples, written by {@link TripleWriter} as the triples are found.
+	 */
+	NTRIPLES(".nt"),
+	/**
+	 * Turtle, written by {@link TripleWriter} as the triples are found.
+	 */
+	TURTLE(".ttl"),
+	/**
+	 * A Jena TDB dataset shared by every file of a run, written by {@link TDBWriter}. The output path is the dataset
+	 * directory.
+	 */
+	TDB("");
+
+	public final String extension;
+
+	private OutputFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @param name a format name as given on the command line, such as <code>ntriples</code>
+	 * @return the format
+	 * @throws IllegalArgumentException if there is no such format
+	 */
+	public static OutputFormat forName(String name) {
+		return valueOf(name.toUpperCase().replace("-", ""));
+	}
+}
@@ -1,11 +1,15 @@
 package org.liicornell.cfr.rdf;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.liicornell.cfr.metrics.Events;
+
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.Property;
@@ -33,7 +37,15 @@ public class RDFGenerator {
 	}
 	
 	public RDFGenerator(Map<String, String> geonames) {
-		model = ModelFactory.createDefaultModel();
+		this(ModelFactory.createDefaultModel(), geonames);
+	}
+
+	/**
+	 * @param model the model to add statements to, such as the default graph of a TDB dataset
+	 * @param geonames mapping of city, country names to URIs
+	 */
+	public RDFGenerator(Model model, Map<String, String> geonames) {
+		this.model = model;
 		model.setNsPrefix("liivoc", LII.URI);
 		model.setNsPrefix("skos", SKOS.URI);
 		model.setNsPrefix("geo", GeoNames.URI);
@@ -43,14 +55,25 @@ public class RDFGenerator {
 	/**
 	 * Add all the triples to this model
 	 * @param triples the collection of triples
+	 * @return the number of triples added
 	 */
-	public void buildModel(Iterable<Triple> triples) {
+	public int buildModel(Iterable<Triple> triples) {
+		int count = 0;
 		for (Triple t : triples) {
-			if (t.subject.length() <= 2 || t.predicate.length() <= 2 || t.object.length() <= 2) {
+			if (!accept(t)) {
 				continue;
 			}
 			add(t);
+			count++;
 		}
+		return count;
+	}
+
+	/**
+	 * @return false for triples with a term too short to be meaningful
+	 */
+	static boolean accept(Triple t) {
+		return t.subject.length() > 2 && t.predicate.length() > 2 && t.object.length() > 2;
 	}
 	
 	/**
@@ -59,7 +82,14 @@ public class RDFGenerator {
 	 * @throws IOException
 	 */
 	public void writeTo(File file) throws IOException {
-		model.write(new FileOutputStream(file));
+		Object event = Events.get().beginWrite();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		try {
+			model.write(out);
+		} finally {
+			out.close();
+		}
+		Events.get().endWrite(event, file.getPath(), model.size());
 	}
 
 	private void add(Triple t) {
@@ -84,7 +114,20 @@ public class RDFGenerator {
 		if (predicate.equals(Triple.RELATED))
 			return SKOS.related;
 		makePredicateDescription(predicate);
-		return model.createProperty(LII.URI, toURI(predicate));
+		return model.createProperty(propertyURI(predicate));
+	}
+
+	/**
+	 * @return the URI of the property for a triple's predicate
+	 */
+	static String propertyURI(String predicate) {
+		if (predicate.equals(Triple.BROADER))
+			return SKOS.broader.getURI();
+		if (predicate.equals(Triple.NARROWER))
+			return SKOS.narrower.getURI();
+		if (predicate.equals(Triple.RELATED))
+			return SKOS.related.getURI();
+		return LII.URI + toURI(predicate);
 	}
 
 	private void makePredicateDescription(String predicate) {
@@ -100,13 +143,25 @@ public class RDFGenerator {
 	 * @return a GeoNames or LII resource with the given name
 	 */
 	private Resource makeResource(String s) {
+		String uri = resourceURI(geonames, s);
+		if (uri == null)
+			return null;
+		return model.createResource(uri);
+	}
+
+	/**
+	 * @param geonames mapping of city, country names to URIs
+	 * @param s the resource name
+	 * @return the GeoNames or LII URI for an entity, or null if it has none
+	 */
+	static String resourceURI(Map<String, String> geonames, String s) {
 		String uri = geonames.get(s);
 		if (uri != null)
-			return model.createResource(uri);
+			return uri;
 		uri = toURI(s);
 		if (uri.isEmpty())
 			return null;
-		return model.createResource(LII.URI + uri);
+		return LII.URI + uri;
 	}
 
 	/**
@@ -0,0 +1,119 @@
+package org.liicornell.cfr.rdf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.ReadWrite;
+import com.hp.hpl.jena.tdb.TDBFactory;
+
+/**
+ * Loads the triples of every file in a run into one Jena TDB dataset on disk, so that a whole title, or the whole CFR,
+ * ends up as a single queryable vocabulary without being held in memory.
+ * 
+ * Each file is added in a write transaction of its own, so a file that fails is rolled back without touching the files
+ * written before it. TDB ties a transaction to the thread that began it, so all writes happen on a thread owned by this
+ * writer; {@link #write(Iterable)} may be called from any thread.
+ */
+public class TDBWriter implements Closeable {
+	private final Dataset dataset;
+	private final Map<String, String> geonames;
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "tdb-writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// only touched on the writer thread
+	private long total = 0;
+
+	/**
+	 * @param directory the dataset directory, created if needed. Triples are added to whatever is already there.
+	 * @param geonames mapping of city, country names to URIs
+	 */
+	public TDBWriter(File directory, Map<String, String> geonames) {
+		directory.mkdirs();
+		dataset = TDBFactory.createDataset(directory.getPath());
+		this.geonames = geonames;
+	}
+
+	/**
+	 * Add the statements for a file's triples to the default graph, and wait until they are committed.
+	 * @param triples the triples
+	 * @throws IOException if the dataset could not be written. None of the file's triples are added, and the files
+	 *             written before it are unaffected.
+	 */
+	public void write(final Iterable<Triple> triples) throws IOException {
+		run(new Callable<Void>() {
+			@Override
+			public Void call() {
+				dataset.begin(ReadWrite.WRITE);
+				boolean committed = false;
+				try {
+					RDFGenerator generator = new RDFGenerator(dataset.getDefaultModel(), geonames);
+					int count = generator.buildModel(triples);
+					dataset.commit();
+					committed = true;
+					total += count;
+				} finally {
+					if (!committed) {
+						dataset.abort();
+					}
+					dataset.end();
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @return the number of triples added so far
+	 */
+	public long size() throws IOException {
+		return run(new Callable<Long>() {
+			@Override
+			public Long call() {
+				return total;
+			}
+		});
+	}
+
+	private <T> T run(Callable<T> task) throws IOException {
+		try {
+			return writer.submit(task).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ex);
+		} catch (ExecutionException ex) {
+			throw new IOException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Close the dataset.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			run(new Callable<Void>() {
+				@Override
+				public Void call() {
+					dataset.close();
+					return null;
+				}
+			});
+		} finally {
+			writer.shutdown();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.liicornell.cfr.rdf;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each distinct term a small integer id, so that a term used by many triples is stored once. Thread-safe; looking
+ * up a known term does not lock.
+ */
+public class TermDictionary {
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] terms = new String[1024];
+	private int size = 0;
+
+	/**
+	 * @return the id of a term, assigning the next free id if it is new
+	 */
+	public int id(String term) {
+		Integer id = ids.get(term);
+		if (id != null)
+			return id;
+		synchronized (this) {
+			id = ids.get(term);
+			if (id != null)
+				return id;
+			String[] t = terms;
+			if (size == t.length) {
+				String[] bigger = new String[t.length * 2];
+				System.arraycopy(t, 0, bigger, 0, t.length);
+				t = bigger;
+			}
+			t[size] = term;
+			// publish the array before the id, so whoever sees the id can read the term
+			terms = t;
+			ids.put(term, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * @param id an id returned by {@link #id(String)}
+	 * @return the term
+	 */
+	public String term(int id) {
+		return terms[id];
+	}
+
+	/**
+	 * @return the number of distinct terms
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
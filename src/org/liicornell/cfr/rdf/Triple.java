@@ -15,39 +15,130 @@ public class Triple {
 	public final String object;
 	public final String predicate;
 
+	/**
+	 * A 64-bit hash of the three terms, computed once. Triples with different fingerprints are never equal.
+	 */
+	private final long fingerprint;
+
 	public static final String BROADER = "skos:broader";
 	public static final String NARROWER = "skos:narrower";
 	public static final String RELATED = "skos:related";
 
+	/**
+	 * Takes the terms as they are; the factory methods format them first.
+	 */
 	private Triple(String subject, String object, String predicate) {
-		this.subject = format(subject);
-		this.object = format(object);
-		this.predicate = format(predicate);
+		this.subject = subject;
+		this.object = object;
+		this.predicate = predicate;
+		long h = 0xcbf29ce484222325L;
+		h = hash(h, subject);
+		h = hash(h, object);
+		h = hash(h, predicate);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		fingerprint = h;
+	}
+
+	/**
+	 * FNV-1a over the term's length and characters, so that the boundaries between terms count.
+	 */
+	private static long hash(long h, String term) {
+		if (term == null)
+			return h * 0x100000001b3L;
+		h = (h ^ term.length()) * 0x100000001b3L;
+		for (int i = 0; i < term.length(); i++) {
+			h = (h ^ term.charAt(i)) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Rebuild a triple from terms taken from another triple, which are already formatted. The terms are used as they
+	 * are, in the order given.
+	 */
+	public static Triple raw(String subject, String object, String predicate) {
+		return new Triple(subject, object, predicate);
+	}
+
+	private static Triple formatted(String subject, String object, String predicate) {
+		return new Triple(format(subject), format(object), format(predicate));
 	}
 
+	/**
+	 * Normalise a term: em dashes become underscores, commas and parentheses are dropped, and the result is lower-cased
+	 * and trimmed. Plain ASCII terms, nearly all of them, are handled in a single pass without regular expressions.
+	 */
 	public static String format(String s) {
+		if (ASCII_LOWER_CASE) {
+			String fast = formatAscii(s);
+			if (fast != null)
+				return fast;
+		}
 		return s.replace('', '_').replaceAll(",|\\(|\\)", "").toLowerCase().trim();
 	}
 
+	/**
+	 * Whether lower-casing ASCII in the default locale maps A-Z to a-z, as it does everywhere but Turkish, Azeri and
+	 * Lithuanian.
+	 */
+	private static final boolean ASCII_LOWER_CASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals(
+			"abcdefghijklmnopqrstuvwxyz");
+
+	/**
+	 * @return the formatted term, or null if it is not plain ASCII
+	 */
+	private static String formatAscii(String s) {
+		int length = s.length();
+		boolean changed = false;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80)
+				return null;
+			if (c == ',' || c == '(' || c == ')' || (c >= 'A' && c <= 'Z'))
+				changed = true;
+		}
+		if (!changed)
+			return s.trim();
+
+		char[] chars = new char[length];
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c == ',' || c == '(' || c == ')')
+				continue;
+			if (c >= 'A' && c <= 'Z')
+				c += 'a' - 'A';
+			chars[n++] = c;
+		}
+		int start = 0;
+		while (start < n && chars[start] <= ' ')
+			start++;
+		while (n > start && chars[n - 1] <= ' ')
+			n--;
+		return new String(chars, start, n - start);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("(%s, %s, %s)", subject, object, predicate);
 	}
 
 	public static Triple narrower(String subject, String object) {
-		return new Triple(subject, object, NARROWER);
+		return formatted(subject, object, NARROWER);
 	}
 
 	public static Triple broader(String subject, String object) {
-		return new Triple(subject, object, BROADER);
+		return formatted(subject, object, BROADER);
 	}
 
 	public static Triple related(String subject, String object) {
-		return new Triple(subject, object, RELATED);
+		return formatted(subject, object, RELATED);
 	}
 
 	public static Triple lii(String subject, String object, String predicate) {
-		return new Triple(subject, object, predicate);
+		return formatted(subject, object, predicate);
 	}
 
 	/**
@@ -56,21 +147,24 @@ public class Triple {
 	 * @return a new inverted triple
 	 */
 	public Triple inversion() {
+		// the terms are already formatted
 		if (predicate.equals(BROADER))
-			return new Triple(object, subject, NARROWER);
+			return raw(object, subject, NARROWER);
 		if (predicate.equals(NARROWER))
-			return new Triple(object, subject, BROADER);
-		return new Triple(object, subject, RELATED);
+			return raw(object, subject, BROADER);
+		return raw(object, subject, RELATED);
+	}
+
+	/**
+	 * @return a 64-bit hash of the three terms
+	 */
+	public long fingerprint() {
+		return fingerprint;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((object == null) ? 0 : object.hashCode());
-		result = prime * result + ((predicate == null) ? 0 : predicate.hashCode());
-		result = prime * result + ((subject == null) ? 0 : subject.hashCode());
-		return result;
+		return (int) (fingerprint ^ (fingerprint >>> 32));
 	}
 
 	@Override
@@ -82,6 +176,8 @@ public class Triple {
 		if (getClass() != obj.getClass())
 			return false;
 		Triple other = (Triple) obj;
+		if (fingerprint != other.fingerprint)
+			return false;
 		if (object == null) {
 			if (other.object != null)
 				return false;
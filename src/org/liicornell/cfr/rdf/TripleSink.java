@@ -0,0 +1,22 @@
+package org.liicornell.cfr.rdf;
+
+import java.util.Collection;
+
+/**
+ * Somewhere for triple generators to put the triples they find. Implementations say whether they may be shared
+ * between threads.
+ */
+public interface TripleSink {
+
+	/**
+	 * Accept a single triple.
+	 * @param triple the triple
+	 */
+	void add(Triple triple);
+
+	/**
+	 * Accept a batch of triples. The caller may reuse the collection afterwards, so implementations must not keep it.
+	 * @param triples the triples
+	 */
+	void addAll(Collection<Triple> triples);
+}
@@ -0,0 +1,261 @@
+package org.liicornell.cfr.rdf;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+
+/**
+ * Writes the same statements as {@link RDFGenerator}, but as N-Triples or Turtle, one statement per line, while the
+ * triples are still being found. To leave out duplicates, each distinct term is kept once in a {@link TermDictionary},
+ * and each statement written is remembered by the ids of its terms: a pair of ids, or a single bit for the statements
+ * that depend on one term alone. Duplicates are found exactly, with no chance of two statements being taken for one.
+ * 
+ * This sink is thread-safe. Errors writing the file are thrown from {@link #close()}.
+ */
+public class TripleWriter implements TripleSink, Closeable {
+	private static final String[][] PREFIXES = { { "liivoc", LII.URI }, { "skos", SKOS.URI }, { "geo", GeoNames.URI },
+			{ "rdf", RDF.getURI() }, { "rdfs", RDFS.getURI() }, { "owl", OWL.getURI() } };
+
+	private final Writer out;
+	private final OutputFormat format;
+	private final Map<String, String> geonames;
+	private final TermDictionary terms = new TermDictionary();
+	/**
+	 * (resource, literal) ids of the skos:prefLabel and rdfs:label statements written.
+	 */
+	private final LongHashSet prefLabels = new LongHashSet();
+	private final LongHashSet labels = new LongHashSet();
+	/**
+	 * Ids of the subjects that have been labelled with their own URI, and of the predicates that have been declared.
+	 */
+	private final BitSet labelledSubjects = new BitSet();
+	private final BitSet declaredPredicates = new BitSet();
+	/**
+	 * (subject, object) ids of the triples written, by property.
+	 */
+	private final Map<String, LongHashSet> triples = new HashMap<String, LongHashSet>();
+	private int statements;
+	private final StringBuilder line = new StringBuilder();
+	private IOException error;
+
+	/**
+	 * @param file the file to write
+	 * @param geonames mapping of city, country names to URIs
+	 * @param format {@link OutputFormat#NTRIPLES} or {@link OutputFormat#TURTLE}
+	 * @throws IOException if the file cannot be created
+	 */
+	public TripleWriter(File file, Map<String, String> geonames, OutputFormat format) throws IOException {
+		this(open(file, format), geonames, format);
+	}
+
+	private static Writer open(File file, OutputFormat format) throws IOException {
+		checkStreamable(format);
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+	}
+
+	private static void checkStreamable(OutputFormat format) {
+		if (format != OutputFormat.NTRIPLES && format != OutputFormat.TURTLE) {
+			throw new IllegalArgumentException(format + " cannot be streamed");
+		}
+	}
+
+	/**
+	 * @param out where to write the statements. Closed by {@link #close()}.
+	 * @param geonames mapping of city, country names to URIs
+	 * @param format {@link OutputFormat#NTRIPLES} or {@link OutputFormat#TURTLE}
+	 * @throws IOException if the Turtle prefixes cannot be written
+	 */
+	public TripleWriter(Writer out, Map<String, String> geonames, OutputFormat format) throws IOException {
+		checkStreamable(format);
+		this.format = format;
+		this.geonames = geonames;
+		this.out = out;
+		if (format == OutputFormat.TURTLE) {
+			for (String[] prefix : PREFIXES) {
+				out.write("@prefix " + prefix[0] + ": <" + prefix[1] + "> .\n");
+			}
+			out.write('\n');
+		}
+	}
+
+	@Override
+	public synchronized void add(Triple t) {
+		if (!RDFGenerator.accept(t))
+			return;
+		String sub = RDFGenerator.resourceURI(geonames, t.subject);
+		if (sub == null)
+			return;
+		String obj = RDFGenerator.resourceURI(geonames, t.object);
+		if (obj == null)
+			return;
+
+		try {
+			int subId = terms.id(sub);
+			int objId = terms.id(obj);
+			long objLabel = pair(objId, terms.id(t.object));
+			if (prefLabels.add(objLabel)) {
+				writeLiteral(obj, SKOS.prefLabel.getURI(), t.object);
+			}
+			if (labels.add(objLabel)) {
+				writeLiteral(obj, RDFS.label.getURI(), t.object);
+			}
+
+			if (!labelledSubjects.get(subId)) {
+				labelledSubjects.set(subId);
+				write(sub, SKOS.prefLabel.getURI(), sub);
+				write(sub, RDFS.label.getURI(), sub);
+			}
+
+			String property = RDFGenerator.propertyURI(t.predicate);
+			if (property.startsWith(LII.URI)) {
+				String pred = RDFGenerator.resourceURI(geonames, t.predicate);
+				if (pred != null) {
+					int predId = terms.id(pred);
+					if (labels.add(pair(predId, terms.id(t.predicate)))) {
+						writeLiteral(pred, RDFS.label.getURI(), t.predicate);
+					}
+					if (!declaredPredicates.get(predId)) {
+						declaredPredicates.set(predId);
+						write(pred, RDF.type.getURI(), OWL.ObjectProperty.getURI());
+						write(pred, RDF.type.getURI(), RDF.Property.getURI());
+					}
+				}
+			}
+			LongHashSet written = triples.get(property);
+			if (written == null) {
+				written = new LongHashSet();
+				triples.put(property, written);
+			}
+			if (written.add(pair(subId, objId))) {
+				write(sub, property, obj);
+			}
+		} catch (IOException ex) {
+			if (error == null) {
+				error = ex;
+			}
+		}
+	}
+
+	@Override
+	public synchronized void addAll(Collection<Triple> triples) {
+		for (Triple t : triples) {
+			add(t);
+		}
+	}
+
+	/**
+	 * @return the number of statements written so far
+	 */
+	public synchronized int statements() {
+		return statements;
+	}
+
+	private static long pair(int first, int second) {
+		return (long) first << 32 | second & 0xffffffffL;
+	}
+
+	private void write(String subject, String predicate, String object) throws IOException {
+		line.setLength(0);
+		appendIRI(subject);
+		line.append(' ');
+		appendIRI(predicate);
+		line.append(' ');
+		appendIRI(object);
+		flushLine();
+	}
+
+	private void writeLiteral(String subject, String predicate, String literal) throws IOException {
+		line.setLength(0);
+		appendIRI(subject);
+		line.append(' ');
+		appendIRI(predicate);
+		line.append(" \"");
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			switch (c) {
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04X", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+		flushLine();
+	}
+
+	private void flushLine() throws IOException {
+		line.append(" .\n");
+		out.append(line);
+		statements++;
+	}
+
+	private void appendIRI(String uri) {
+		if (format == OutputFormat.TURTLE) {
+			for (String[] prefix : PREFIXES) {
+				if (uri.startsWith(prefix[1]) && isSimpleLocalName(uri, prefix[1].length())) {
+					line.append(prefix[0]).append(':').append(uri, prefix[1].length(), uri.length());
+					return;
+				}
+			}
+		}
+		line.append('<');
+		for (int i = 0; i < uri.length(); i++) {
+			char c = uri.charAt(i);
+			if (c <= ' ' || "<>\"{}|^`\\".indexOf(c) >= 0) {
+				line.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+						.append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+			} else {
+				line.append(c);
+			}
+		}
+		line.append('>');
+	}
+
+	private static boolean isSimpleLocalName(String uri, int start) {
+		if (start == uri.length())
+			return false;
+		for (int i = start; i < uri.length(); i++) {
+			char c = uri.charAt(i);
+			if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_'))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+		if (error != null) {
+			throw error;
+		}
+	}
+}
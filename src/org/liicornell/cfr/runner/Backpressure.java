@@ -0,0 +1,52 @@
+package org.liicornell.cfr.runner;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many blocks of text, and how many characters of it, are waiting for or being worked on by the NLP workers. The
+ * reader blocks in {@link #acquire(int)} until enough earlier blocks have finished, so heap use depends on the size of
+ * the pool rather than the size of the file.
+ */
+class Backpressure {
+	private final Semaphore blocks;
+	private final Semaphore chars;
+	private final int maxChars;
+
+	/**
+	 * @param maxBlocks the most blocks in flight
+	 * @param maxChars the most characters of raw text in flight. A single larger block is still let through on its own.
+	 */
+	Backpressure(int maxBlocks, int maxChars) {
+		blocks = new Semaphore(maxBlocks, true);
+		chars = new Semaphore(maxChars, true);
+		this.maxChars = maxChars;
+	}
+
+	/**
+	 * Wait until a block of the given size may be submitted.
+	 * @param size the length of the raw text
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	void acquire(int size) throws InterruptedException {
+		blocks.acquire();
+		try {
+			chars.acquire(permits(size));
+		} catch (InterruptedException ex) {
+			blocks.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Note that a block has been completely processed.
+	 * @param size the length of the raw text, as given to {@link #acquire(int)}
+	 */
+	void release(int size) {
+		chars.release(permits(size));
+		blocks.release();
+	}
+
+	private int permits(int size) {
+		return Math.max(1, Math.min(size, maxChars));
+	}
+}
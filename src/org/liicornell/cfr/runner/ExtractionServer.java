@@ -0,0 +1,268 @@
+package org.liicornell.cfr.runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.liicornell.cfr.cache.SentenceCache;
+import org.liicornell.cfr.metrics.Metrics;
+import org.liicornell.cfr.rdf.OutputFormat;
+import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleSink;
+import org.liicornell.cfr.rdf.TripleWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves extraction requests over HTTP from a {@link Runner} whose models, GeoNames and caches stay loaded between
+ * requests, so a request costs only the parsing of its own sentences. Listens on the loopback interface only.
+ *
+ * <dl>
+ * <dt><code>POST /extract</code></dt>
+ * <dd>extract triples from the request body, a block of UTF-8 text such as the contents of a <code>text</code>
+ * element.</dd>
+ * <dt><code>GET /extract?file=PATH</code></dt>
+ * <dd>extract triples from every <code>text</code> element of an XML file under the server's input root. Without a
+ * root, files can't be requested.</dd>
+ * <dt><code>GET /stats</code></dt>
+ * <dd>the number of sentences skipped for being over the parse budget, the sentence cache hit rate and the time spent
+ * in each stage so far.</dd>
+ * </dl>
+ *
+ * Extraction responses are N-Triples, or Turtle with <code>format=turtle</code>. The workers write each request's
+ * statements into a buffer of its own, which is sent once they are done, so a slow client holds up only its own
+ * request. Requests are handled concurrently and share the runner's worker pool.
+ */
+public class ExtractionServer {
+	/**
+	 * Parsed once at startup, so that the first request does not pay for class loading and the first parse.
+	 */
+	private static final String WARM_UP_TEXT = "The Secretary shall publish the list of approved facilities in the Federal Register.";
+
+	private static final int MAX_TEXT_BYTES = 16 * 1024 * 1024;
+
+	private final Runner runner;
+	private final File root;
+	private final HttpServer server;
+	private final ExecutorService requests;
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/**
+	 * @param runner the runner that does the extraction
+	 * @param port the port to listen on
+	 * @param root the directory whose files may be requested with <code>file=PATH</code>, or null for none
+	 * @throws IOException if the port cannot be bound
+	 */
+	public ExtractionServer(Runner runner, int port, File root) throws IOException {
+		this.runner = runner;
+		this.root = root == null ? null : root.getCanonicalFile();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+		requests = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "extraction-request");
+			}
+		});
+		server.setExecutor(requests);
+		server.createContext("/extract", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					extract(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.createContext("/stats", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					StringBuilder stats = new StringBuilder();
+					stats.append(requestCount.get()).append(" requests\n");
+					stats.append(ParseBudget.skipped()).append(" sentences over the parse budget\n");
+					if (SentenceCache.get() != null) {
+						stats.append(SentenceCache.get()).append('\n');
+					}
+					stats.append(Metrics.summary());
+					respond(exchange, 200, stats.toString());
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Parse a sentence so that the models are loaded and warm, then start taking requests.
+	 * @throws InterruptedException if interrupted while warming up
+	 */
+	public void start() throws InterruptedException {
+		long start = System.nanoTime();
+		runner.extract(WARM_UP_TEXT, "warm-up", new TripleSink() {
+			@Override
+			public void add(Triple t) {
+			}
+
+			@Override
+			public void addAll(Collection<Triple> triples) {
+			}
+		});
+		System.out.printf("Warmed up in %.1fs%n", (System.nanoTime() - start) / 1e9);
+		server.start();
+		System.out.println("Listening on http://localhost:" + server.getAddress().getPort() + "/extract");
+	}
+
+	/**
+	 * Stop taking requests, giving those in progress a few seconds to finish.
+	 */
+	public void stop() {
+		server.stop(5);
+		requests.shutdown();
+	}
+
+	private void extract(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		OutputFormat format;
+		try {
+			format = query.containsKey("format") ? OutputFormat.forName(query.get("format")) : OutputFormat.NTRIPLES;
+		} catch (IllegalArgumentException ex) {
+			format = null;
+		}
+		if (format != OutputFormat.NTRIPLES && format != OutputFormat.TURTLE) {
+			respond(exchange, 400, "format must be ntriples or turtle\n");
+			return;
+		}
+
+		File file = null;
+		String text = null;
+		if (query.containsKey("file")) {
+			file = resolve(query.get("file"));
+			if (file == null) {
+				respond(exchange, 403, root == null ? "Files can't be requested from this server\n"
+						: "Only files under " + root + " can be requested\n");
+				return;
+			}
+			if (!file.isFile()) {
+				respond(exchange, 404, "No such file: " + file + "\n");
+				return;
+			}
+		} else if ("POST".equals(method)) {
+			text = readBody(exchange.getRequestBody());
+			if (text == null) {
+				respond(exchange, 413, "Text must be at most " + MAX_TEXT_BYTES + " bytes\n");
+				return;
+			}
+		} else {
+			respond(exchange, 400, "POST a block of text, or give a file=PATH parameter\n");
+			return;
+		}
+
+		int id = requestCount.incrementAndGet();
+		// the workers write into memory, never into the socket, so a client that reads slowly can't hold them up
+		StringWriter buffer = new StringWriter();
+		TripleWriter writer = new TripleWriter(buffer, runner.geoNames(), format);
+		try {
+			if (file != null) {
+				runner.extract(file, writer);
+			} else {
+				runner.extract(text, "request " + id, writer);
+			}
+			writer.close();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "Server shutting down\n");
+			return;
+		} catch (Exception ex) {
+			System.err.println("Error processing request " + id + ": " + ex);
+			respond(exchange, 500, "Could not process the request: " + ex + "\n");
+			return;
+		}
+
+		byte[] body = buffer.toString().getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type",
+				format == OutputFormat.TURTLE ? "text/turtle; charset=utf-8" : "application/n-triples; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @param path a path given by the client
+	 * @return the file, or null if it is not under the input root
+	 */
+	private File resolve(String path) throws IOException {
+		if (root == null)
+			return null;
+		File file = new File(path);
+		if (!file.isAbsolute()) {
+			file = new File(root, path);
+		}
+		file = file.getCanonicalFile();
+		for (File dir = file.getParentFile(); dir != null; dir = dir.getParentFile()) {
+			if (dir.equals(root))
+				return file;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the body as a string, or null if it is too long
+	 */
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+			if (body.size() + n > MAX_TEXT_BYTES)
+				return null;
+			body.write(buffer, 0, n);
+		}
+		return body.toString("UTF-8");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] bytes = message.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null)
+			return params;
+		for (String param : query.split("&")) {
+			int eq = param.indexOf('=');
+			if (eq < 0) {
+				params.put(URLDecoder.decode(param, "UTF-8"), "");
+			} else {
+				params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+						URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+			}
+		}
+		return params;
+	}
+}
@@ -1,20 +1,18 @@
 package org.liicornell.cfr.runner;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
-
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
@@ -23,102 +21,333 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Mapper;
 import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Partitioner;
+import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.mapred.lib.MultithreadedMapRunner;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.mahout.classifier.bayes.XmlInputFormat;
 import org.liicornell.cfr.opennlp.OpenNLPPipeline;
+import org.liicornell.cfr.opennlp.OpenNLPTripleGenerator;
+import org.liicornell.cfr.preprocessor.Gazetteer;
 import org.liicornell.cfr.preprocessor.Preprocessor;
+import org.liicornell.cfr.preprocessor.TextCleaner;
+import org.liicornell.cfr.rdf.OutputFormat;
+import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleSink;
+import org.liicornell.cfr.rdf.TripleWriter;
 
 /**
- * An alternative entry for the application, to run on Hadoop.
+ * An alternative entry for the application, to run on Hadoop. By default the job only preprocesses each
+ * <code>text</code> element. With <code>-extract</code> the mappers extract its triples with OpenNLP, a combiner
+ * leaves out the duplicates found on each node, and the reducers, each taking the subjects that hash to it, write the
+ * distinct statements as N-Triples shards. <code>-reducers N</code> sets the number of shards.
+ * <code>-threads N</code> runs N mapper threads in each map task, each with its own parser, tokenizer and sentence
+ * detector but sharing one copy of the models.
  * @author Caleb Perkins
  *
  */
 public class HadoopRunner extends Configured implements Tool {
+	private static final String COUNTER_GROUP = "Vocabulary extraction";
+
+	/**
+	 * Point {@link Runner#DATASETS_PATH} at the datasets archive shipped with the job, unpacked in the task's local
+	 * cache. This has to happen before anything reads the path, which the task's first <code>configure</code> does;
+	 * with JVM reuse the later tasks of the job find the same directory.
+	 * @param job the job, with the archive's name in <code>cfr.datasets.archive</code> if one was shipped
+	 * @throws IOException if the local cache can't be read
+	 */
+	private static synchronized void useCachedDatasets(JobConf job) throws IOException {
+		String name = job.get("cfr.datasets.archive");
+		if (name == null)
+			return;
+		Path[] archives = DistributedCache.getLocalCacheArchives(job);
+		if (archives == null)
+			return;
+		for (Path archive : archives) {
+			if (!archive.getName().equals(name))
+				continue;
+			File dir = new File(archive.toString());
+			// the archive may hold the datasets directory itself or just its contents
+			if (new File(dir, "datasets").isDirectory()) {
+				dir = new File(dir, "datasets");
+			}
+			String path = dir.getAbsolutePath() + File.separator;
+			if (System.getProperty("cornell.datasets.dir") == null) {
+				System.setProperty("cornell.datasets.dir", path);
+			}
+			if (System.getProperty("WNSEARCHDIR") == null) {
+				System.setProperty("WNSEARCHDIR", path + "dict");
+			}
+			if (!path.equals(Runner.DATASETS_PATH)) {
+				System.err.println("Using datasets in " + Runner.DATASETS_PATH + ", not " + path);
+			}
+			return;
+		}
+	}
+
 	private static class Map extends MapReduceBase implements
 			Mapper<Text, Text, Text, Text> {
 
-		private static final XMLInputFactory factory = XMLInputFactory
-				.newInstance();
-
-		private final Set<String> agenciesToRemove = new HashSet<String>();
+		/**
+		 * The agencies and acts to replace, or null if none were given.
+		 */
+		private Gazetteer gazetteer;
 		private boolean resolvePronouns = false;
-		private final Text outValue = new Text();
 
-		private static String extractSentence(String document)
-				throws IOException {
+		/**
+		 * The buffers a thread reuses from one record to the next. With <code>-threads</code> several threads share
+		 * the mapper, so each has its own.
+		 */
+		private static class Buffers {
+			final Text outValue = new Text();
+			final XmlText xml = new XmlText();
+			final TextCleaner cleaner = new TextCleaner();
+		}
 
-			try {
-				XMLStreamReader reader = factory
-						.createXMLStreamReader(new StringReader(document));
-				String s = "";
-				while (reader.hasNext()) {
-					int code = reader.next();
-					switch (code) {
-					case XMLStreamReader.CHARACTERS:
-						s += reader.getText();
-					}
-				}
-				reader.close();
-				return s;
-			} catch (XMLStreamException ex) {
-				throw new IOException(ex);
+		private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+			@Override
+			protected Buffers initialValue() {
+				return new Buffers();
 			}
-		}
+		};
 
 		@Override
 		public void configure(JobConf job) {
 			try {
-				Path[] agencyFiles = DistributedCache.getLocalCacheFiles(job);
-				if (job.getBoolean("cfr.remove.agencies", false)) {
-					for (Path path : agencyFiles) {
-						parseAgencyFile(path);
+				useCachedDatasets(job);
+				java.util.Map<File, String> files = new LinkedHashMap<File, String>();
+				Path[] cached = DistributedCache.getLocalCacheFiles(job);
+				if (cached != null) {
+					for (Path path : cached) {
+						if (path.getName().equals(job.get("cfr.agencies.file"))) {
+							files.put(new File(path.toString()), Preprocessor.AGENCY);
+						} else if (path.getName().equals(job.get("cfr.acts.file"))) {
+							files.put(new File(path.toString()), Preprocessor.ACT);
+						}
 					}
 				}
+				if (!files.isEmpty()) {
+					// built once per JVM, so reused tasks share it
+					gazetteer = Gazetteer.load(files);
+					System.out.println("Read " + gazetteer.size() + " agencies and acts");
+				}
 			} catch (IOException e) {
 				System.err.println(e);
 			}
 			resolvePronouns = job.getBoolean("cfr.nlp.resolve.pronouns", false);
+			if (resolvePronouns) {
+				OpenNLPPipeline.load(true, true);
+			}
+		}
+
+		@Override
+		public void map(Text key, Text value,
+				OutputCollector<Text, Text> output, Reporter reporter)
+				throws IOException {
+			// the record is decoded, cleaned and encoded again in buffers that are reused for every record
+			Buffers b = buffers.get();
+			CharSequence text = b.cleaner.cleanBuffered(b.xml.decode(value), gazetteer);
+			if (resolvePronouns) {
+				text = OpenNLPPipeline.getInstance().resolvePronouns(text.toString());
+			}
+			b.xml.encode(text, b.outValue);
+			output.collect(key, b.outValue);
+		}
+
+	}
+
+	/**
+	 * Extracts the triples of each record, in place of {@link Map} when the job is run with <code>-extract</code>.
+	 * The sentences of a record are parsed one after another on the thread that reads it. Each thread uses its own
+	 * OpenNLP tools through {@link OpenNLPPipeline#getInstance()}, and all of them share the models.
+	 */
+	private static class ExtractMap extends MapReduceBase implements
+			Mapper<Text, Text, TripleWritable, NullWritable> {
+		private final Map preprocessor = new Map();
+
+		/**
+		 * What a thread reuses from one record to the next.
+		 */
+		private static class Buffers {
+			final TripleWritable outKey = new TripleWritable();
+			final XmlText xml = new XmlText();
+			final List<Triple> found = new ArrayList<Triple>();
+			final TripleSink sink = new TripleSink() {
+				@Override
+				public void add(Triple t) {
+					found.add(t);
+				}
+
+				@Override
+				public void addAll(Collection<Triple> triples) {
+					found.addAll(triples);
+				}
+			};
 		}
 
-		private void parseAgencyFile(Path path) throws IOException {
-			BufferedReader fis = new BufferedReader(new FileReader(
-					path.toString()));
-			String agency = null;
-			while ((agency = fis.readLine()) != null) {
-				agenciesToRemove.add(agency);
+		private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+			@Override
+			protected Buffers initialValue() {
+				return new Buffers();
 			}
-			fis.close();
-			System.out.println("Read agencies");
+		};
+
+		@Override
+		public void configure(JobConf job) {
+			preprocessor.configure(job);
+			// once per JVM; later tasks in a reused JVM find the models loaded
+			long start = System.nanoTime();
+			OpenNLPPipeline.load(true, false);
+			System.out.printf("Models ready in %.1fs%n", (System.nanoTime() - start) / 1e9);
 		}
 
 		@Override
 		public void map(Text key, Text value,
-				OutputCollector<Text, Text> output, Reporter reporter)
+				OutputCollector<TripleWritable, NullWritable> output, Reporter reporter)
 				throws IOException {
-			String document = value.toString();
-			String s = extractSentence(document);
-			s = processSentence(s);
-			outValue.set(s);
-			output.collect(key, outValue);
+			Buffers b = buffers.get();
+			String text = b.xml.decode(value).toString();
+			Gazetteer gazetteer = preprocessor.gazetteer;
+			if (gazetteer == null) {
+				gazetteer = Preprocessor.defaultGazetteer();
+			}
+			if (preprocessor.resolvePronouns) {
+				// on the raw text, since split cleans it afterwards
+				text = OpenNLPPipeline.getInstance().resolvePronouns(text);
+			}
+			for (SentenceTask sentence : OpenNLPTripleGenerator.split(b.sink, text, gazetteer, key.toString())) {
+				try {
+					sentence.run();
+				} catch (RuntimeException ex) {
+					System.err.println("Error processing a sentence in " + key + ": " + ex);
+					reporter.incrCounter(COUNTER_GROUP, "Failed sentences", 1);
+				}
+				reporter.progress();
+			}
+			reporter.incrCounter(COUNTER_GROUP, "Triples found", b.found.size());
+			for (Triple t : b.found) {
+				b.outKey.set(t);
+				output.collect(b.outKey, NullWritable.get());
+			}
+			b.found.clear();
 		}
+	}
 
-		private String processSentence(String sentence) {
-			sentence = Preprocessor.preprocessText(sentence);
-			
-			if (resolvePronouns) {
-				sentence = OpenNLPPipeline.getInstance().resolvePronouns(sentence);
+	/**
+	 * Leaves out duplicate triples, as a combiner before the shuffle and again in the reducers.
+	 */
+	static class Dedup extends MapReduceBase implements
+			Reducer<TripleWritable, NullWritable, TripleWritable, NullWritable> {
+		@Override
+		public void reduce(TripleWritable key, Iterator<NullWritable> values,
+				OutputCollector<TripleWritable, NullWritable> output, Reporter reporter)
+				throws IOException {
+			output.collect(key, NullWritable.get());
+		}
+	}
+
+	/**
+	 * Sends every triple with the same subject to the same reducer, so each subject's statements end up in one shard.
+	 * The labels of the object and the declaration of the predicate go with the triple, so shards can repeat them.
+	 */
+	private static class SubjectPartitioner implements Partitioner<TripleWritable, NullWritable> {
+		@Override
+		public void configure(JobConf job) {
+		}
+
+		@Override
+		public int getPartition(TripleWritable key, NullWritable value, int numPartitions) {
+			return (key.subject.hashCode() & Integer.MAX_VALUE) % numPartitions;
+		}
+	}
+
+	/**
+	 * Writes the distinct triples of a partition as an N-Triples shard, the same statements {@link TripleWriter} writes
+	 * for a single machine run.
+	 */
+	static class NTriplesReduce extends MapReduceBase implements
+			Reducer<TripleWritable, NullWritable, Text, NullWritable> {
+		private java.util.Map<String, String> geoNames;
+		private TripleWriter writer;
+		private LineCollector lines;
+
+		@Override
+		public void configure(JobConf job) {
+			try {
+				useCachedDatasets(job);
+				geoNames = Runner.parseGeonames();
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
 			}
+		}
 
-			for (String agency : agenciesToRemove) {
-				sentence = sentence.replaceAll(agency, "Agency");
+		@Override
+		public void reduce(TripleWritable key, Iterator<NullWritable> values,
+				OutputCollector<Text, NullWritable> output, Reporter reporter)
+				throws IOException {
+			if (writer == null) {
+				lines = new LineCollector(output);
+				writer = new TripleWriter(lines, geoNames, OutputFormat.NTRIPLES);
 			}
+			writer.add(key.get());
+		}
 
-			return sentence;
+		@Override
+		public void close() throws IOException {
+			if (writer != null) {
+				writer.close();
+			}
 		}
+	}
+
+	/**
+	 * Passes each line written to it to an output collector, as the key of a record, without the line break.
+	 */
+	private static class LineCollector extends Writer {
+		private final OutputCollector<Text, NullWritable> output;
+		private final StringBuilder line = new StringBuilder();
+		private final Text outKey = new Text();
 
+		LineCollector(OutputCollector<Text, NullWritable> output) {
+			this.output = output;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++) {
+				write(cbuf[i]);
+			}
+		}
+
+		@Override
+		public Writer append(CharSequence csq) throws IOException {
+			for (int i = 0; i < csq.length(); i++) {
+				write(csq.charAt(i));
+			}
+			return this;
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			if (c == '\n') {
+				outKey.set(line.toString());
+				output.collect(outKey, NullWritable.get());
+				line.setLength(0);
+			} else {
+				line.append((char) c);
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -129,12 +358,6 @@ public class HadoopRunner extends Configured implements Tool {
 	@Override
 	public int run(String[] args) throws Exception {
 		JobConf conf = new JobConf(getConf(), HadoopRunner.class);
-		conf.setJobName("preprocess");
-
-		conf.setOutputKeyClass(Text.class);
-		conf.setOutputValueClass(Text.class);
-
-		conf.setMapperClass(Map.class);
 
 		conf.setInputFormat(XmlInputFormat.class);
 		conf.set("xmlinput.start", "<text>");
@@ -144,23 +367,55 @@ public class HadoopRunner extends Configured implements Tool {
 		// Reuse the JVM to conserve memory
 		conf.setInt("mapred.job.reuse.jvm.num.tasks", -1);
 
+		boolean extract = false;
 		ArrayList<String> other_args = new ArrayList<String>();
 		for (int i = 0; i < args.length; ++i) {
 			if ("-agencies".equals(args[i])) {
-				conf.setBoolean("cfr.remove.agencies", true);
-				DistributedCache
-						.addCacheFile(new Path(args[++i]).toUri(), conf);
+				Path agencies = new Path(args[++i]);
+				conf.set("cfr.agencies.file", agencies.getName());
+				DistributedCache.addCacheFile(agencies.toUri(), conf);
 			} else if ("-acts".equals(args[i])) {
-				conf.setBoolean("cfr.remove.acts", true);
-				DistributedCache
-						.addCacheFile(new Path(args[++i]).toUri(), conf);
+				Path acts = new Path(args[++i]);
+				conf.set("cfr.acts.file", acts.getName());
+				DistributedCache.addCacheFile(acts.toUri(), conf);
+			} else if ("-datasets".equals(args[i])) {
+				// unpacked once per node and found again by every task
+				Path datasets = new Path(args[++i]);
+				conf.set("cfr.datasets.archive", datasets.getName());
+				DistributedCache.addCacheArchive(datasets.toUri(), conf);
 			} else if ("-resolvePronouns".equals(args[i])) {
 				conf.setBoolean("cfr.nlp.resolve.pronouns", true);
+			} else if ("-extract".equals(args[i])) {
+				extract = true;
+			} else if ("-threads".equals(args[i])) {
+				// one task JVM per node runs several mappers, which share the models
+				conf.setMapRunnerClass(MultithreadedMapRunner.class);
+				conf.setInt("mapred.map.multithreadedrunner.threads", Integer.parseInt(args[++i]));
+			} else if ("-reducers".equals(args[i])) {
+				conf.setNumReduceTasks(Integer.parseInt(args[++i]));
 			} else {
 				other_args.add(args[i]);
 			}
 		}
 
+		if (extract) {
+			conf.setJobName("extract");
+			conf.setMapperClass(ExtractMap.class);
+			conf.setMapOutputKeyClass(TripleWritable.class);
+			conf.setMapOutputValueClass(NullWritable.class);
+			conf.setOutputKeyComparatorClass(TripleWritable.Comparator.class);
+			conf.setCombinerClass(Dedup.class);
+			conf.setPartitionerClass(SubjectPartitioner.class);
+			conf.setReducerClass(NTriplesReduce.class);
+			conf.setOutputKeyClass(Text.class);
+			conf.setOutputValueClass(NullWritable.class);
+		} else {
+			conf.setJobName("preprocess");
+			conf.setMapperClass(Map.class);
+			conf.setOutputKeyClass(Text.class);
+			conf.setOutputValueClass(Text.class);
+		}
+
 		FileInputFormat.setInputPaths(conf, new Path(other_args.get(0)));
 		FileOutputFormat.setOutputPath(conf, new Path(other_args.get(1)));
 
@@ -0,0 +1,98 @@
+package org.liicornell.cfr.runner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on how much work the parsers may spend on a single sentence, so that a handful of run-on sentences cannot
+ * stall the workers. Sentences over budget are skipped and counted, and the first few are kept, see
+ * {@link #overBudget()}.
+ * 
+ * The budget is global, like {@link Runner#DATASETS_PATH}; set it before the first sentence is parsed.
+ */
+public class ParseBudget {
+	/**
+	 * No limits beyond each parser's own defaults.
+	 */
+	public static final ParseBudget DEFAULT = new ParseBudget(0, 0, 0);
+
+	private static volatile ParseBudget current = DEFAULT;
+	/**
+	 * How many skipped sentences are kept, so that a long-running server doesn't hold on to every one.
+	 */
+	static final int SAMPLE_SIZE = 100;
+
+	private static final Queue<String> overBudget = new ConcurrentLinkedQueue<String>();
+	private static final AtomicLong skipped = new AtomicLong();
+
+	/**
+	 * The most tokens a sentence may have, or 0 for the parser's default: no limit for OpenNLP, 70 for CoreNLP.
+	 */
+	public final int maxTokens;
+	/**
+	 * How many partial parses the OpenNLP parser keeps at each step, or 0 for its default. CoreNLP's PCFG parser has no
+	 * beam and ignores this.
+	 */
+	public final int beamSize;
+	/**
+	 * How long a single sentence may be parsed for, or 0 for no limit. Only the OpenNLP parser can be stopped part
+	 * way; CoreNLP's ignores interrupts, so its sentences are limited by {@link #maxTokens} alone.
+	 */
+	public final long timeoutMillis;
+
+	public ParseBudget(int maxTokens, int beamSize, long timeoutMillis) {
+		this.maxTokens = maxTokens;
+		this.beamSize = beamSize;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @return the budget in effect
+	 */
+	public static ParseBudget get() {
+		return current;
+	}
+
+	/**
+	 * @param budget the budget for every sentence parsed from now on
+	 */
+	public static void set(ParseBudget budget) {
+		current = budget;
+	}
+
+	/**
+	 * @param defaultMaxTokens the parser's own limit, used when {@link #maxTokens} is 0
+	 * @return the token limit to apply
+	 */
+	public int maxTokens(int defaultMaxTokens) {
+		return maxTokens > 0 ? maxTokens : defaultMaxTokens;
+	}
+
+	/**
+	 * Note a sentence that was skipped because it was over budget.
+	 * @param sentence the sentence
+	 * @param reason which limit it broke
+	 */
+	public static void record(String sentence, String reason) {
+		if (skipped.incrementAndGet() <= SAMPLE_SIZE) {
+			overBudget.add(reason + ": " + sentence);
+		}
+	}
+
+	/**
+	 * @return how many sentences have been skipped so far
+	 */
+	public static long skipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return the first {@link #SAMPLE_SIZE} sentences skipped, with the reason
+	 */
+	public static List<String> overBudget() {
+		return new ArrayList<String>(overBudget);
+	}
+}
@@ -0,0 +1,78 @@
+package org.liicornell.cfr.runner;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size thread pool that always runs the queued task with the highest priority next. Tasks of equal priority
+ * run in the order they were submitted.
+ */
+class PriorityExecutor extends ThreadPoolExecutor {
+	private final AtomicLong sequence = new AtomicLong();
+
+	private class PrioritizedFuture<T> extends FutureTask<T> implements Comparable<PrioritizedFuture<?>> {
+		private final long priority;
+		private final long order = sequence.getAndIncrement();
+
+		PrioritizedFuture(Callable<T> callable, long priority) {
+			super(callable);
+			this.priority = priority;
+		}
+
+		PrioritizedFuture(Runnable runnable, T result, long priority) {
+			super(runnable, result);
+			this.priority = priority;
+		}
+
+		@Override
+		public int compareTo(PrioritizedFuture<?> other) {
+			if (priority != other.priority)
+				return priority > other.priority ? -1 : 1;
+			return order < other.order ? -1 : (order == other.order ? 0 : 1);
+		}
+	}
+
+	PriorityExecutor(int threads) {
+		super(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+	}
+
+	/**
+	 * @param task the task to run
+	 * @param priority higher runs sooner
+	 * @return a future for the task's result
+	 */
+	public <T> Future<T> submit(Callable<T> task, long priority) {
+		PrioritizedFuture<T> future = new PrioritizedFuture<T>(task, priority);
+		execute(future);
+		return future;
+	}
+
+	/**
+	 * @param task the task to run
+	 * @param priority higher runs sooner
+	 * @return a future that completes when the task does
+	 */
+	public Future<?> submit(Runnable task, long priority) {
+		PrioritizedFuture<Object> future = new PrioritizedFuture<Object>(task, null, priority);
+		execute(future);
+		return future;
+	}
+
+	// tasks submitted without a priority go behind everything else
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+		return new PrioritizedFuture<T>(callable, 0);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new PrioritizedFuture<T>(runnable, value, 0);
+	}
+}
@@ -4,29 +4,47 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.filter.ElementFilter;
 import org.jdom2.input.SAXBuilder;
+import org.liicornell.cfr.cache.SentenceCache;
+import org.liicornell.cfr.cache.SentenceStore;
+import org.liicornell.cfr.cache.TieredTripleCache;
+import org.liicornell.cfr.cache.TripleCache;
+import org.liicornell.cfr.corenlp.StanfordPipeline;
 import org.liicornell.cfr.corenlp.StanfordTripleGenerator;
+import org.liicornell.cfr.metrics.Metrics;
+import org.liicornell.cfr.metrics.Stage;
+import org.liicornell.cfr.metrics.StageMetrics;
+import org.liicornell.cfr.opennlp.OpenNLPPipeline;
 import org.liicornell.cfr.opennlp.OpenNLPTripleGenerator;
+import org.liicornell.cfr.rdf.CompactTripleStore;
+import org.liicornell.cfr.rdf.OutputFormat;
 import org.liicornell.cfr.rdf.RDFGenerator;
+import org.liicornell.cfr.rdf.TDBWriter;
 import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleSink;
+import org.liicornell.cfr.rdf.TripleWriter;
 
 /**
  * The command line interface into the Vocabulary Extraction tool. Once compiled as a JAR, you can run the JAR using this syntax:
  * 
  * <pre>
- * <code>java -Xms3072M -Xmx3072M -Dcornell.datasets.dir=<b>DATASETS_DIR</b> -jar VocabularyExtraction.jar <b>INPUT_DIR</b> <b>OUTPUT_DIR</b> [-useStanfordParser]</code>
+ * <code>java -Xms3072M -Xmx3072M -Dcornell.datasets.dir=<b>DATASETS_DIR</b> -jar VocabularyExtraction.jar <b>INPUT_DIR</b> <b>OUTPUT_DIR</b> [-useStanfordParser] [-stream] [-threads <b>N</b>]</code>
  * </pre>
  * 
  * <dl>
@@ -38,8 +56,45 @@ import org.liicornell.cfr.rdf.Triple;
  * <dd>the folder where you want RDF files to be output to. If you are processing a single XML file, this will be a single RDF path.</dd>
  * <dt>-useStanfordParser</dt>
  * <dd>if you include this flag, use the Stanford CoreNLP parser. It is slower and gives different results.</dd>
+ * <dt>-stream</dt>
+ * <dd>read <code>text</code> elements with a streaming parser and start on each one as soon as it has been read, instead
+ * of loading the whole document first. Memory use no longer grows with the size of the XML file.</dd>
+ * <dt>-threads N</dt>
+ * <dd>the number of NLP worker threads shared by every file in the run. Defaults to the number of processors.</dd>
+ * <dt>-format rdfxml|ntriples|turtle|tdb</dt>
+ * <dd>the output format. N-Triples and Turtle are written as the triples are found instead of through an in-memory
+ * Jena model, so output memory depends on the number of distinct statements only. <code>tdb</code> loads every file
+ * into a single Jena TDB dataset in OUTPUT_DIR. Defaults to RDF/XML.</dd>
+ * <dt>-queueDepth N</dt>
+ * <dd>the most blocks of text waiting for the workers at any time. Reading pauses until earlier blocks are done.
+ * Defaults to 16 per thread.</dd>
+ * <dt>-maxInFlightChars N</dt>
+ * <dd>the most characters of raw text waiting for the workers at any time. Defaults to 32M.</dd>
+ * <dt>-cacheSize N</dt>
+ * <dd>how many sentences to remember the triples of, so that repeated sentences are parsed once. Defaults to
+ * 10,000; 0 turns the cache off. Hit rates are printed at the end of the run.</dd>
+ * <dt>-store FILE</dt>
+ * <dd>keep the triples of every sentence in FILE, and reuse them in later runs with the same parser and settings. A
+ * rerun over a new edition of the CFR then only parses the sentences that changed.</dd>
+ * <dt>-maxTokens N</dt>
+ * <dd>skip sentences with more than N tokens. Defaults to no limit for OpenNLP and 70 for CoreNLP.</dd>
+ * <dt>-beamSize N</dt>
+ * <dd>how many partial parses the OpenNLP parser keeps. Smaller is faster and less accurate.</dd>
+ * <dt>-parseTimeout MILLIS</dt>
+ * <dd>abandon a sentence once it has been parsed for this long. OpenNLP only: the CoreNLP parser can't be stopped
+ * part way, so use <code>-maxTokens</code> with <code>-useStanfordParser</code>.</dd>
  * </dl>
  * 
+ * To keep the models loaded between extractions, give <code>-server <b>PORT</b></code> in place of INPUT_DIR and
+ * OUTPUT_DIR. The runner then serves requests on localhost through an {@link ExtractionServer} until it is stopped.
+ * The other flags apply as above, except <code>-format</code>, which each request chooses for itself. Requests may
+ * name XML files on the server's disk only if <code>-serverRoot <b>DIR</b></code> is given, and only files under DIR.
+ * 
+ * Sentences skipped because of <code>-maxTokens</code> or <code>-parseTimeout</code> are listed at the end of the run,
+ * followed by how long each stage of the pipeline took. The same timings are available during the run as JMX MBeans
+ * under <code>org.liicornell.cfr</code>. For a closer look, record the run with Java Flight Recorder: parsing,
+ * extraction and writing emit <code>org.liicornell.cfr.*</code> events with the sentence's size and source element.
+ * 
  * As an example, here's how to process an individual file:
  * 
  * <pre><code>java -Xms3072M -Xmx3072M -Dcornell.datasets.dir=~/Downloads/VocabularyExtraction/datasets/ -jar VocabularyExtraction.jar ~/Desktop/Title7/part-1.xml ~/Desktop/Output/Title7/part-1.rdf</code></pre>
@@ -48,11 +103,34 @@ import org.liicornell.cfr.rdf.Triple;
  * 
  */
 public class Runner {
-	private final SAXBuilder builder;
+	/**
+	 * How many files are read, waited on and written at the same time. While one file's last sentences are being
+	 * parsed, the next file is already feeding the worker pool.
+	 */
+	private static final int FILES_IN_FLIGHT = 2;
+
+	/**
+	 * The default limit on characters of raw text in flight.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT_CHARS = 32 * 1024 * 1024;
+
+	/**
+	 * The default number of sentences in the sentence cache.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
 	private final ElementFilter filter;
 	private final boolean useStanfordParser;
 	private final Map<String, String> geoNames;
 	private final boolean verbose;
+	private final PriorityExecutor workers;
+	private Backpressure backpressure;
+	private boolean streaming = false;
+	private OutputFormat format = OutputFormat.RDFXML;
+	private TDBWriter tdb;
+	private final StageMetrics xmlRead;
+	private final StageMetrics modelBuild;
+	private final StageMetrics write;
 	
 	/**
 	 * The path to the datasets folder, including the trailing space.
@@ -60,11 +138,32 @@ public class Runner {
 	public static final String DATASETS_PATH = System.getProperty("cornell.datasets.dir");
 
 	public Runner(boolean stanfordParser, boolean verbose) throws IOException {
-		builder = new SAXBuilder();
+		this(stanfordParser, verbose, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stanfordParser use the Stanford CoreNLP parser instead of OpenNLP
+	 * @param verbose print every triple
+	 * @param threads the size of the worker pool that every file processed by this runner shares
+	 * @throws IOException if the GeoNames file cannot be read
+	 */
+	public Runner(boolean stanfordParser, boolean verbose, int threads) throws IOException {
 		filter = new ElementFilter("text");
 		useStanfordParser = stanfordParser;
+		// the models load in the background while the GeoNames are read and the first file is parsed
+		if (stanfordParser) {
+			StanfordPipeline.warmUp();
+		} else {
+			OpenNLPPipeline.warmUp(true);
+		}
 		geoNames = parseGeonames();
 		this.verbose = verbose;
+		workers = new PriorityExecutor(threads);
+		String parser = stanfordParser ? StanfordTripleGenerator.PARSER : OpenNLPTripleGenerator.PARSER;
+		xmlRead = Metrics.get(parser, Stage.XML_READ);
+		modelBuild = Metrics.get(parser, Stage.MODEL_BUILD);
+		write = Metrics.get(parser, Stage.WRITE);
+		backpressure = new Backpressure(16 * threads, DEFAULT_MAX_IN_FLIGHT_CHARS);
 	}
 
 	/**
@@ -72,7 +171,7 @@ public class Runner {
 	 * @return an immutable mapping of geographic entity names to their GeoName URIs
 	 * @throws IOException if the file cannot be read or found
 	 */
-	private static Map<String, String> parseGeonames() throws IOException {
+	static Map<String, String> parseGeonames() throws IOException {
 		Map<String, String> map = new HashMap<String, String>();
 		File f = new File(new File(DATASETS_PATH, "geonames"), "geoids.txt");
 		BufferedReader br = new BufferedReader(new FileReader(f));
@@ -86,6 +185,39 @@ public class Runner {
 		return Collections.unmodifiableMap(map);
 	}
 
+	/**
+	 * @param streaming whether to stream <code>text</code> elements out of each file instead of building a JDOM tree
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * @param format how to write the output. Anything but RDF/XML is written while the triples are being found, without
+	 *            building a Jena model.
+	 */
+	public void setFormat(OutputFormat format) {
+		this.format = format;
+	}
+
+	/**
+	 * Load the triples of every file into one TDB dataset instead of writing a file for each.
+	 * @param tdb the dataset writer, which the caller closes after the run
+	 */
+	public void setTDB(TDBWriter tdb) {
+		this.tdb = tdb;
+		this.format = OutputFormat.TDB;
+	}
+
+	/**
+	 * Limit the work that is read ahead of the workers.
+	 * @param queueDepth the most blocks of text in flight
+	 * @param maxChars the most characters of raw text in flight
+	 */
+	public void setBackpressure(int queueDepth, int maxChars) {
+		backpressure = new Backpressure(queueDepth, maxChars);
+	}
+
 	/**
 	 * Extract triples from an XML file into an RDF file.
 	 * @param in an XML file from the CFR
@@ -93,26 +225,33 @@ public class Runner {
 	 * @throws Exception if anything went wrong
 	 */
 	public void processFile(final File in, final File out) throws Exception {
-		// TODO reuse thread pool across files
-		int threads = Runtime.getRuntime().availableProcessors();
-		ExecutorService pool = Executors.newFixedThreadPool(threads);
-		Document doc = builder.build(in);
-		Element rootNode = doc.getRootElement();
-
-		RDFGenerator rdfGenerator = new RDFGenerator(geoNames);
-
-		Set<Triple> triples = new HashSet<Triple>();
-
-		// each text tag is processed separately
-		for (Element c : rootNode.getDescendants(filter)) {
-			Runnable r = useStanfordParser ? new StanfordTripleGenerator(triples, c.getText())
-					: new OpenNLPTripleGenerator(triples, c.getText());
-			pool.execute(r);
+		if (format == OutputFormat.TDB) {
+			CompactTripleStore triples = new CompactTripleStore();
+			extract(in, triples);
+			long start = System.nanoTime();
+			tdb.write(triples);
+			write.record(start, triples.size());
+			return;
+		}
+		if (format != OutputFormat.RDFXML) {
+			// triples go straight to the file as the workers find them
+			TripleWriter writer = new TripleWriter(out, geoNames, format);
+			try {
+				extract(in, writer);
+			} finally {
+				long start = System.nanoTime();
+				writer.close();
+				write.record(start);
+			}
+			if (verbose) {
+				System.out.println("Wrote " + writer.statements() + " statements to " + out);
+			}
+			return;
 		}
 
-		// wait for threads to finish and build RDF file
-		pool.shutdown();
-		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		RDFGenerator rdfGenerator = new RDFGenerator(geoNames);
+		CompactTripleStore triples = new CompactTripleStore();
+		extract(in, triples);
 		
 		if (verbose) {
 			for (Triple triple : triples) {
@@ -120,8 +259,211 @@ public class Runner {
 			}
 		}
 
-		rdfGenerator.buildModel(triples);
+		long start = System.nanoTime();
+		int count = rdfGenerator.buildModel(triples);
+		modelBuild.record(start, count);
+		start = System.nanoTime();
 		rdfGenerator.writeTo(out);
+		write.record(start);
+	}
+
+	/**
+	 * Extract triples from every <code>text</code> element of an XML file, and wait until all of them are in the sink.
+	 */
+	void extract(File in, TripleSink triples) throws Exception {
+		// each text tag is split into sentences, which are parsed separately on the pool shared by all files
+		List<Future<List<Future<?>>>> tasks = new ArrayList<Future<List<Future<?>>>>();
+		if (streaming) {
+			TextElementReader reader = new TextElementReader(in, "text");
+			try {
+				long start = System.nanoTime();
+				String text;
+				while ((text = reader.next()) != null) {
+					xmlRead.record(start);
+					tasks.add(submit(triples, text, source(in, tasks.size())));
+					start = System.nanoTime();
+				}
+			} finally {
+				reader.close();
+			}
+		} else {
+			// SAXBuilder is not thread-safe and several files may be read at once
+			long start = System.nanoTime();
+			Document doc = new SAXBuilder().build(in);
+			xmlRead.record(start);
+			Element rootNode = doc.getRootElement();
+			for (Element c : rootNode.getDescendants(filter)) {
+				tasks.add(submit(triples, c.getText(), source(in, tasks.size())));
+			}
+		}
+
+		// wait for this file's sentences to finish
+		await(in.getName(), tasks);
+	}
+
+	/**
+	 * Extract triples from a block of text, such as the contents of one <code>text</code> element, and wait until all
+	 * of them are in the sink.
+	 * @param text the raw text
+	 * @param source where the text came from, for error messages and Flight Recorder events
+	 */
+	void extract(String text, String source, TripleSink triples) throws InterruptedException {
+		List<Future<List<Future<?>>>> tasks = new ArrayList<Future<List<Future<?>>>>(1);
+		tasks.add(submit(triples, text, source));
+		await(source, tasks);
+	}
+
+	private static void await(String name, List<Future<List<Future<?>>>> tasks) throws InterruptedException {
+		for (Future<List<Future<?>>> task : tasks) {
+			try {
+				for (Future<?> sentence : task.get()) {
+					try {
+						sentence.get();
+					} catch (ExecutionException ex) {
+						System.err.println("Error processing a sentence in " + name + ": " + ex.getCause());
+					}
+				}
+			} catch (ExecutionException ex) {
+				System.err.println("Error processing text in " + name + ": " + ex.getCause());
+			}
+		}
+	}
+
+	/**
+	 * @return mapping of city, country names to URIs
+	 */
+	Map<String, String> geoNames() {
+		return geoNames;
+	}
+
+	/**
+	 * @return how Flight Recorder events name the nth <code>text</code> element of a file
+	 */
+	private static String source(File in, int element) {
+		return in.getName() + " text[" + element + "]";
+	}
+
+	/**
+	 * Split a block of text into sentences ahead of any waiting sentence, then queue each sentence by its length, longest
+	 * first. Long sentences then start early instead of becoming stragglers at the end of a file.
+	 * 
+	 * Blocks until the {@link Backpressure} lets the block through. Its permits are returned once the block's last
+	 * sentence is done.
+	 * @return a future for the futures of the block's sentences
+	 * @throws InterruptedException if interrupted while waiting for room
+	 */
+	private Future<List<Future<?>>> submit(final TripleSink triples, final String text, final String source)
+			throws InterruptedException {
+		final Backpressure limit = backpressure;
+		final int size = text.length();
+		limit.acquire(size);
+		boolean submitted = false;
+		try {
+			Future<List<Future<?>>> block = workers.submit(new Callable<List<Future<?>>>() {
+				@Override
+				public List<Future<?>> call() {
+					// one for the block itself until all its sentences are queued, then one for each unfinished
+					// sentence. The permits go back when it reaches 0, however splitting or queueing ends.
+					final AtomicInteger remaining = new AtomicInteger(1);
+					try {
+						List<? extends SentenceTask> sentences = useStanfordParser ? StanfordTripleGenerator.split(
+								triples, text, source) : OpenNLPTripleGenerator.split(triples, text, source);
+						List<Future<?>> futures = new ArrayList<Future<?>>(sentences.size());
+						for (final SentenceTask sentence : sentences) {
+							remaining.incrementAndGet();
+							boolean queued = false;
+							try {
+								futures.add(workers.submit(new Runnable() {
+									@Override
+									public void run() {
+										try {
+											sentence.run();
+										} finally {
+											if (remaining.decrementAndGet() == 0) {
+												limit.release(size);
+											}
+										}
+									}
+								}, sentence.tokenCount()));
+								queued = true;
+							} finally {
+								if (!queued) {
+									remaining.decrementAndGet();
+								}
+							}
+						}
+						return futures;
+					} finally {
+						if (remaining.decrementAndGet() == 0) {
+							limit.release(size);
+						}
+					}
+				}
+			}, Long.MAX_VALUE);
+			submitted = true;
+			return block;
+		} finally {
+			if (!submitted) {
+				limit.release(size);
+			}
+		}
+	}
+
+	/**
+	 * Extract triples from every XML file in a directory. Several files are in flight at once so that reading and
+	 * writing one file overlaps with parsing the sentences of another.
+	 * @param input a directory of XML files from the CFR
+	 * @param output the directory to write RDF files to
+	 * @throws InterruptedException if interrupted while waiting for the files to finish
+	 */
+	public void processDirectory(File input, final File output) throws InterruptedException {
+		output.mkdirs();
+		ExecutorService files = Executors.newFixedThreadPool(FILES_IN_FLIGHT);
+		for (final File in : input.listFiles()) {
+			files.execute(new Runnable() {
+				@Override
+				public void run() {
+					System.out.println("Processing " + in);
+					File out = new File(output, in.getName() + format.extension);
+					try {
+						processFile(in, out);
+					} catch (Exception ex) {
+						System.err.println("Error processing " + in.getName() + ": " + ex);
+					}
+				}
+			});
+		}
+		files.shutdown();
+		files.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stop the worker threads once all the submitted work is done.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+
+	/**
+	 * Serve extraction requests until the JVM is stopped.
+	 */
+	private static void serve(final Runner runner, int port, File root, final SentenceStore store) throws Exception {
+		final ExtractionServer server = new ExtractionServer(runner, port, root);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop();
+				runner.shutdown();
+				if (store != null) {
+					try {
+						store.close();
+					} catch (IOException ex) {
+						System.err.println("Could not close " + store + ": " + ex);
+					}
+				}
+			}
+		});
+		server.start();
 	}
 
 	/**
@@ -132,7 +474,7 @@ public class Runner {
 	public static void main(String[] args) throws Exception {
 		// parse arguments
 		if (args.length < 2) {
-			System.err.println("You must provide the arguments: input/file/or/directory output/file/or/directory [-useStanfordParser] [-verbose]");
+			System.err.println("You must provide the arguments: (input/file/or/directory output/file/or/directory | -server PORT [-serverRoot DIR]) [-useStanfordParser] [-verbose] [-stream] [-format rdfxml|ntriples|turtle|tdb] [-threads N] [-queueDepth N] [-maxInFlightChars N] [-cacheSize N] [-store FILE] [-maxTokens N] [-beamSize N] [-parseTimeout MILLIS]");
 			System.exit(-1);
 		}
 		if (DATASETS_PATH == null) {
@@ -142,33 +484,114 @@ public class Runner {
 		if (System.getProperty("WNSEARCHDIR") == null) {
 			System.setProperty("WNSEARCHDIR", DATASETS_PATH + "dict");
 		}
+		// -server PORT takes the place of the input and output
+		int port = args[0].equals("-server") ? Integer.parseInt(args[1]) : -1;
 		File input = new File(args[0]);
 		File output = new File(args[1]);
 		boolean useStanfordParser = false;
 		boolean verbose = false;
-		for (String arg : args) {
-			if (arg.equals("-useStanfordParser")) {
+		boolean streaming = false;
+		OutputFormat format = OutputFormat.RDFXML;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int maxTokens = 0;
+		int beamSize = 0;
+		long parseTimeout = 0;
+		int queueDepth = 0;
+		int maxInFlightChars = DEFAULT_MAX_IN_FLIGHT_CHARS;
+		int cacheSize = DEFAULT_CACHE_SIZE;
+		File storeFile = null;
+		File serverRoot = null;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("-useStanfordParser")) {
 				useStanfordParser = true;
-			} else if (arg.equals("-verbose")) {
+			} else if (args[i].equals("-verbose")) {
 				verbose = true;
+			} else if (args[i].equals("-stream")) {
+				streaming = true;
+			} else if (args[i].equals("-format")) {
+				format = OutputFormat.forName(args[++i]);
+			} else if (args[i].equals("-threads")) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-queueDepth")) {
+				queueDepth = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-maxInFlightChars")) {
+				maxInFlightChars = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-cacheSize")) {
+				cacheSize = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-serverRoot")) {
+				serverRoot = new File(args[++i]);
+			} else if (args[i].equals("-store")) {
+				storeFile = new File(args[++i]);
+			} else if (args[i].equals("-maxTokens")) {
+				maxTokens = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-beamSize")) {
+				beamSize = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-parseTimeout")) {
+				parseTimeout = Long.parseLong(args[++i]);
 			}
 		}
+		if (useStanfordParser && parseTimeout > 0) {
+			System.err.println("-parseTimeout only works with the OpenNLP parser. Use -maxTokens to limit the CoreNLP parser.");
+			System.exit(-1);
+		}
+		ParseBudget.set(new ParseBudget(maxTokens, beamSize, parseTimeout));
+		TripleCache cache = cacheSize > 0 ? new SentenceCache(cacheSize) : null;
+		SentenceStore store = null;
+		if (storeFile != null) {
+			String version = useStanfordParser ? StanfordTripleGenerator.VERSION : OpenNLPTripleGenerator.VERSION;
+			if (beamSize > 0) {
+				version += "/beam" + beamSize;
+			}
+			store = new SentenceStore(storeFile, version);
+			cache = cache == null ? store : new TieredTripleCache(cache, store);
+		}
+		SentenceCache.set(cache);
 
-		Runner runner = new Runner(useStanfordParser, verbose);
+		Runner runner = new Runner(useStanfordParser, verbose, threads);
+		runner.setStreaming(streaming);
+		runner.setBackpressure(queueDepth > 0 ? queueDepth : 16 * threads, maxInFlightChars);
+		if (port >= 0) {
+			serve(runner, port, serverRoot, store);
+			return;
+		}
+		runner.setFormat(format);
+		TDBWriter tdb = null;
+		if (format == OutputFormat.TDB) {
+			tdb = new TDBWriter(output, runner.geoNames);
+			runner.setTDB(tdb);
+		}
 
-		if (input.isDirectory()) {
-			output.mkdirs();
-			for (File in : input.listFiles()) {
-				System.out.println("Processing " + in);
-				File out = new File(output, in.getName() + ".rdf");
-				try {
-					runner.processFile(in, out);
-				} catch (Exception ex) {
-					System.err.println("Error processing " + in.getName() + ": " + ex);
-				}
+		try {
+			if (input.isDirectory()) {
+				runner.processDirectory(input, output);
+			} else {
+				runner.processFile(input, output);
+			}
+		} finally {
+			runner.shutdown();
+			if (tdb != null) {
+				System.out.println("Loaded " + tdb.size() + " triples into " + output);
+				tdb.close();
+			}
+			if (store != null) {
+				store.close();
+			}
+		}
+
+		if (cache != null) {
+			System.out.println(cache);
+		}
+		System.out.println("Time spent in each stage:");
+		System.out.print(Metrics.summary());
+
+		long skipped = ParseBudget.skipped();
+		if (skipped > 0) {
+			List<String> overBudget = ParseBudget.overBudget();
+			System.err.print(skipped + " sentences were skipped for being over the parse budget");
+			System.err.println(skipped > overBudget.size() ? ", the first " + overBudget.size() + " of them:" : ":");
+			for (String sentence : overBudget) {
+				System.err.println(sentence);
 			}
-		} else {
-			runner.processFile(input, output);
 		}
 	}
 
@@ -0,0 +1,13 @@
+package org.liicornell.cfr.runner;
+
+/**
+ * Extracts triples from a single sentence. {@link Runner} schedules these longest first, so that one long sentence
+ * does not hold up the end of a file.
+ */
+public interface SentenceTask extends Runnable {
+
+	/**
+	 * @return the number of tokens in the sentence, a rough measure of how long it will take to parse
+	 */
+	int tokenCount();
+}
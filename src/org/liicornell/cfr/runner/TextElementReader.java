@@ -0,0 +1,96 @@
+package org.liicornell.cfr.runner;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pulls the text of each element with a given name out of an XML file as soon as the element's end tag has been read,
+ * without ever holding the whole document in memory.
+ * 
+ * Like JDOM's {@code Element.getText()}, only the element's own character data is returned, not that of its children.
+ * Nested elements are returned separately, innermost first.
+ */
+class TextElementReader implements Closeable {
+	private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+	private final String elementName;
+	private final InputStream in;
+	private final XMLStreamReader reader;
+
+	/**
+	 * The text of every matching element that is currently open, innermost on top.
+	 */
+	private final Deque<StringBuilder> open = new ArrayDeque<StringBuilder>();
+	/**
+	 * The depth of every matching element that is currently open, innermost on top.
+	 */
+	private final Deque<Integer> openDepths = new ArrayDeque<Integer>();
+	private int depth = 0;
+
+	public TextElementReader(File file, String elementName) throws IOException, XMLStreamException {
+		this.elementName = elementName;
+		in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			reader = factory.createXMLStreamReader(in);
+		} catch (XMLStreamException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Read until the next matching element is complete.
+	 * @return the element's text, or null at the end of the document
+	 * @throws XMLStreamException if the document is malformed
+	 */
+	public String next() throws XMLStreamException {
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamReader.START_ELEMENT:
+				depth++;
+				if (reader.getLocalName().equals(elementName)) {
+					open.push(new StringBuilder());
+					openDepths.push(depth);
+				}
+				break;
+			case XMLStreamReader.CHARACTERS:
+			case XMLStreamReader.CDATA:
+			case XMLStreamReader.SPACE:
+				if (!open.isEmpty() && openDepths.peek() == depth) {
+					open.peek().append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+			case XMLStreamReader.END_ELEMENT:
+				boolean complete = !open.isEmpty() && openDepths.peek() == depth;
+				depth--;
+				if (complete) {
+					openDepths.pop();
+					return open.pop().toString();
+				}
+				break;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException ex) {
+			throw new IOException(ex);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package org.liicornell.cfr.runner;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.liicornell.cfr.rdf.Triple;
+
+/**
+ * A {@link Triple} as a MapReduce key. Triples sort by subject, predicate and object, comparing the UTF-8 bytes of
+ * each, so equal triples reach the same reduce call and a subject's triples are next to each other. The registered
+ * comparator sorts the serialised keys without deserialising them.
+ */
+class TripleWritable implements WritableComparable<TripleWritable> {
+	static {
+		WritableComparator.define(TripleWritable.class, new Comparator());
+	}
+
+	final Text subject = new Text();
+	final Text predicate = new Text();
+	final Text object = new Text();
+
+	void set(Triple t) {
+		subject.set(t.subject);
+		predicate.set(t.predicate);
+		object.set(t.object);
+	}
+
+	/**
+	 * @return the triple, with the terms exactly as {@link #set(Triple)} stored them
+	 */
+	Triple get() {
+		return Triple.raw(subject.toString(), object.toString(), predicate.toString());
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		subject.write(out);
+		predicate.write(out);
+		object.write(out);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		subject.readFields(in);
+		predicate.readFields(in);
+		object.readFields(in);
+	}
+
+	@Override
+	public int compareTo(TripleWritable o) {
+		int c = subject.compareTo(o.subject);
+		if (c == 0)
+			c = predicate.compareTo(o.predicate);
+		if (c == 0)
+			c = object.compareTo(o.object);
+		return c;
+	}
+
+	@Override
+	public int hashCode() {
+		return (subject.hashCode() * 31 + predicate.hashCode()) * 31 + object.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TripleWritable))
+			return false;
+		TripleWritable other = (TripleWritable) obj;
+		return subject.equals(other.subject) && predicate.equals(other.predicate) && object.equals(other.object);
+	}
+
+	@Override
+	public String toString() {
+		return get().toString();
+	}
+
+	/**
+	 * Compares serialised triples field by field, in the same order as {@link TripleWritable#compareTo}.
+	 */
+	static class Comparator extends WritableComparator {
+		Comparator() {
+			super(TripleWritable.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				for (int field = 0; field < 3; field++) {
+					// each field is a vint length followed by that many bytes
+					int v1 = WritableUtils.decodeVIntSize(b1[s1]);
+					int v2 = WritableUtils.decodeVIntSize(b2[s2]);
+					int n1 = readVInt(b1, s1);
+					int n2 = readVInt(b2, s2);
+					int c = compareBytes(b1, s1 + v1, n1, b2, s2 + v2, n2);
+					if (c != 0)
+						return c;
+					s1 += v1 + n1;
+					s2 += v2 + n2;
+				}
+				return 0;
+			} catch (IOException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package org.liicornell.cfr.runner;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Pulls the character data out of an XML record, such as a <code>text</code> element read by
+ * {@link org.apache.mahout.classifier.bayes.XmlInputFormat}, straight from the UTF-8 bytes of the {@link Text}. Tags,
+ * comments and processing instructions are dropped; CDATA sections are kept; the predefined entities and character
+ * references are decoded and line breaks are normalised, so the result is what a StAX reader reports as characters.
+ * Malformed markup is passed over rather than rejected.
+ *
+ * The buffers are reused from one record to the next, so instances are not thread-safe.
+ */
+class XmlText {
+	private final StringBuilder chars = new StringBuilder();
+	private byte[] bytes = new byte[1024];
+
+	/**
+	 * @param record an XML fragment
+	 * @return its character data, in a buffer that the next call overwrites
+	 */
+	CharSequence decode(Text record) {
+		byte[] b = record.getBytes();
+		int n = record.getLength();
+		chars.setLength(0);
+		int i = 0;
+		while (i < n) {
+			int c = b[i] & 0xff;
+			if (c == '<') {
+				i = skipMarkup(b, i, n);
+			} else if (c == '&') {
+				i = decodeReference(b, i, n);
+			} else if (c == '\r') {
+				// XML end-of-line handling: \r\n and a lone \r both become \n
+				chars.append('\n');
+				i++;
+				if (i < n && b[i] == '\n')
+					i++;
+			} else if (c < 0x80) {
+				chars.append((char) c);
+				i++;
+			} else {
+				i = decodeUTF8(b, i, n);
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * Skip a tag, comment, processing instruction or declaration, or add the contents of a CDATA section.
+	 * @return the index after the markup
+	 */
+	private int skipMarkup(byte[] b, int i, int n) {
+		if (startsWith(b, i, n, "<!--"))
+			return skipPast(b, i + 4, n, "-->");
+		if (startsWith(b, i, n, "<![CDATA[")) {
+			int end = indexOf(b, i + 9, n, "]]>");
+			int stop = end < 0 ? n : end;
+			int j = i + 9;
+			while (j < stop) {
+				int c = b[j] & 0xff;
+				if (c == '\r') {
+					chars.append('\n');
+					j++;
+					if (j < stop && b[j] == '\n')
+						j++;
+				} else if (c < 0x80) {
+					chars.append((char) c);
+					j++;
+				} else {
+					j = decodeUTF8(b, j, stop);
+				}
+			}
+			return end < 0 ? n : end + 3;
+		}
+		if (startsWith(b, i, n, "<?"))
+			return skipPast(b, i + 2, n, "?>");
+		// a start or end tag, or a declaration. Attribute values may hold '>'.
+		byte quote = 0;
+		for (int j = i + 1; j < n; j++) {
+			byte c = b[j];
+			if (quote != 0) {
+				if (c == quote)
+					quote = 0;
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '>') {
+				return j + 1;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Decode an entity or character reference. Anything else starting with '&amp;' is kept as it is.
+	 * @return the index after the reference
+	 */
+	private int decodeReference(byte[] b, int i, int n) {
+		int semi = -1;
+		for (int j = i + 1; j < n && j < i + 12; j++) {
+			if (b[j] == ';') {
+				semi = j;
+				break;
+			}
+		}
+		if (semi > i + 1) {
+			int code = -1;
+			if (b[i + 1] == '#') {
+				code = parseCharRef(b, i + 2, semi);
+			} else if (startsWith(b, i + 1, semi, "amp") && semi == i + 4) {
+				code = '&';
+			} else if (startsWith(b, i + 1, semi, "lt") && semi == i + 3) {
+				code = '<';
+			} else if (startsWith(b, i + 1, semi, "gt") && semi == i + 3) {
+				code = '>';
+			} else if (startsWith(b, i + 1, semi, "quot") && semi == i + 5) {
+				code = '"';
+			} else if (startsWith(b, i + 1, semi, "apos") && semi == i + 5) {
+				code = '\'';
+			}
+			if (code >= 0) {
+				chars.appendCodePoint(code);
+				return semi + 1;
+			}
+		}
+		chars.append('&');
+		return i + 1;
+	}
+
+	/**
+	 * @return the code point of a decimal or hexadecimal character reference, or -1 if it isn't one or names a
+	 *         character XML doesn't allow, such as NUL or a surrogate
+	 */
+	private static int parseCharRef(byte[] b, int from, int to) {
+		int radix = 10;
+		if (from < to && (b[from] == 'x' || b[from] == 'X')) {
+			radix = 16;
+			from++;
+		}
+		if (from == to)
+			return -1;
+		int code = 0;
+		for (int j = from; j < to; j++) {
+			int digit = Character.digit(b[j], radix);
+			if (digit < 0)
+				return -1;
+			code = code * radix + digit;
+			if (code > Character.MAX_CODE_POINT)
+				return -1;
+		}
+		if (!isXmlChar(code))
+			return -1;
+		return code;
+	}
+
+	/**
+	 * @return whether XML 1.0 allows a character: tab, line feed, carriage return, and everything from space up except
+	 *         surrogates, U+FFFE and U+FFFF
+	 */
+	private static boolean isXmlChar(int code) {
+		if (code < 0x20)
+			return code == '\t' || code == '\n' || code == '\r';
+		return code < Character.MIN_SURROGATE || code > Character.MAX_SURROGATE && code != 0xfffe && code != 0xffff;
+	}
+
+	/**
+	 * Decode one UTF-8 sequence. A malformed sequence becomes U+FFFD, like {@link Text#toString()} does: overlong
+	 * forms and values above U+10FFFF are rejected at the second byte, an encoded surrogate is replaced as a whole, and
+	 * each byte that can't start a sequence is replaced on its own.
+	 * @return the index after the sequence
+	 */
+	private int decodeUTF8(byte[] b, int i, int n) {
+		int c = b[i] & 0xff;
+		int length;
+		int code;
+		// the range of the second byte, which rules out the overlong and out of range values
+		int min = 0x80;
+		int max = 0xbf;
+		if (c >= 0xc2 && c <= 0xdf) {
+			length = 2;
+			code = c & 0x1f;
+		} else if (c >= 0xe0 && c <= 0xef) {
+			length = 3;
+			code = c & 0x0f;
+			if (c == 0xe0)
+				min = 0xa0;
+		} else if (c >= 0xf0 && c <= 0xf4) {
+			length = 4;
+			code = c & 0x07;
+			if (c == 0xf0)
+				min = 0x90;
+			else if (c == 0xf4)
+				max = 0x8f;
+		} else {
+			chars.append('\uFFFD');
+			return i + 1;
+		}
+		for (int j = 1; j < length; j++) {
+			int next = i + j < n ? b[i + j] & 0xff : -1;
+			if (next < min || next > max) {
+				chars.append('\uFFFD');
+				return i + j;
+			}
+			code = (code << 6) | (next & 0x3f);
+			min = 0x80;
+			max = 0xbf;
+		}
+		if (code >= Character.MIN_SURROGATE && code <= Character.MAX_SURROGATE) {
+			chars.append('\uFFFD');
+		} else {
+			chars.appendCodePoint(code);
+		}
+		return i + length;
+	}
+
+	/**
+	 * Set a {@link Text} to the UTF-8 encoding of some characters, reusing one buffer for every call.
+	 */
+	void encode(CharSequence s, Text out) {
+		int n = s.length();
+		if (bytes.length < n * 3) {
+			bytes = new byte[Math.max(n * 3, bytes.length * 2)];
+		}
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				bytes[length++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[length++] = (byte) (0xc0 | c >> 6);
+				bytes[length++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int code = Character.toCodePoint(c, s.charAt(++i));
+				bytes[length++] = (byte) (0xf0 | code >> 18);
+				bytes[length++] = (byte) (0x80 | code >> 12 & 0x3f);
+				bytes[length++] = (byte) (0x80 | code >> 6 & 0x3f);
+				bytes[length++] = (byte) (0x80 | code & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				// an unpaired surrogate, which Text replaces with '?'
+				bytes[length++] = '?';
+			} else {
+				bytes[length++] = (byte) (0xe0 | c >> 12);
+				bytes[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+				bytes[length++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+		out.set(bytes, 0, length);
+	}
+
+	private static boolean startsWith(byte[] b, int i, int n, String prefix) {
+		if (i + prefix.length() > n)
+			return false;
+		for (int j = 0; j < prefix.length(); j++) {
+			if (b[i + j] != prefix.charAt(j))
+				return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(byte[] b, int i, int n, String s) {
+		for (int j = i; j + s.length() <= n; j++) {
+			if (startsWith(b, j, n, s))
+				return j;
+		}
+		return -1;
+	}
+
+	private static int skipPast(byte[] b, int i, int n, String s) {
+		int end = indexOf(b, i, n, s);
+		return end < 0 ? n : end + s.length();
+	}
+}
@@ -0,0 +1,98 @@
+package org.liicornell.cfr.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+import org.liicornell.cfr.rdf.OutputFormat;
+import org.liicornell.cfr.rdf.Triple;
+import org.liicornell.cfr.rdf.TripleWriter;
+
+public class HadoopRunnerTest {
+	private static final List<Triple> TRIPLES = Arrays.asList(Triple.related("reference material", "guide"),
+			Triple.related("records", "information"), Triple.narrower("material", "reference material"),
+			Triple.narrower("records", "agency records"), Triple.related("information", "records"));
+
+	/**
+	 * The keys the reducers see: sorted, each triple once.
+	 */
+	private static List<TripleWritable> sortedKeys() {
+		List<TripleWritable> keys = new ArrayList<TripleWritable>();
+		for (Triple t : TRIPLES) {
+			TripleWritable key = new TripleWritable();
+			key.set(t);
+			keys.add(key);
+		}
+		Collections.sort(keys);
+		return keys;
+	}
+
+	private static List<NullWritable> values(int n) {
+		return Collections.nCopies(n, NullWritable.get());
+	}
+
+	@Test
+	public void testDedup() throws IOException {
+		final List<TripleWritable> collected = new ArrayList<TripleWritable>();
+		OutputCollector<TripleWritable, NullWritable> output = new OutputCollector<TripleWritable, NullWritable>() {
+			@Override
+			public void collect(TripleWritable key, NullWritable value) {
+				TripleWritable copy = new TripleWritable();
+				copy.set(key.get());
+				collected.add(copy);
+			}
+		};
+		HadoopRunner.Dedup dedup = new HadoopRunner.Dedup();
+		List<TripleWritable> keys = sortedKeys();
+		for (int i = 0; i < keys.size(); i++) {
+			dedup.reduce(keys.get(i), values(i + 1).iterator(), output, Reporter.NULL);
+		}
+		assertEquals(keys, collected);
+	}
+
+	@Test
+	public void testNTriplesReduceWritesWhatTripleWriterWrites() throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		OutputCollector<Text, NullWritable> output = new OutputCollector<Text, NullWritable>() {
+			@Override
+			public void collect(Text key, NullWritable value) {
+				lines.add(key.toString());
+			}
+		};
+		HadoopRunner.NTriplesReduce reduce = new HadoopRunner.NTriplesReduce();
+		reduce.configure(new JobConf());
+		List<TripleWritable> keys = sortedKeys();
+		for (TripleWritable key : keys) {
+			reduce.reduce(key, values(2).iterator(), output, Reporter.NULL);
+		}
+		reduce.close();
+
+		StringWriter expected = new StringWriter();
+		TripleWriter writer = new TripleWriter(expected, Runner.parseGeonames(), OutputFormat.NTRIPLES);
+		for (TripleWritable key : keys) {
+			writer.add(key.get());
+		}
+		writer.close();
+
+		assertFalse(lines.isEmpty());
+		StringBuilder joined = new StringBuilder();
+		for (String line : lines) {
+			assertTrue(line, line.endsWith(" .") && line.indexOf('\n') < 0);
+			joined.append(line).append('\n');
+		}
+		assertEquals(expected.toString(), joined.toString());
+	}
+}
@@ -0,0 +1,87 @@
+package org.liicornell.cfr.runner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Test;
+import org.liicornell.cfr.rdf.Triple;
+
+public class TripleWritableTest {
+	private static final String ALPHABET = "aab_ Z\u00e9\u2014\ud83d\ude00";
+
+	private static String randomTerm(Random random) {
+		StringBuilder s = new StringBuilder();
+		// long enough now and then for the length to take more than one byte
+		int length = random.nextInt(10) == 0 ? 100 + random.nextInt(200) : random.nextInt(6);
+		while (s.length() < length) {
+			int i = random.nextInt(ALPHABET.length() - 1);
+			if (Character.isHighSurrogate(ALPHABET.charAt(i))) {
+				s.append(ALPHABET, i, i + 2);
+			} else if (!Character.isLowSurrogate(ALPHABET.charAt(i))) {
+				s.append(ALPHABET.charAt(i));
+			}
+		}
+		return s.toString();
+	}
+
+	private static TripleWritable randomKey(Random random) {
+		TripleWritable key = new TripleWritable();
+		key.subject.set(randomTerm(random));
+		key.predicate.set(random.nextBoolean() ? key.subject.toString() : randomTerm(random));
+		key.object.set(randomTerm(random));
+		return key;
+	}
+
+	private static byte[] serialise(TripleWritable key) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		key.write(out);
+		byte[] bytes = new byte[out.getLength()];
+		System.arraycopy(out.getData(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random random = new Random(7);
+		DataInputBuffer in = new DataInputBuffer();
+		TripleWritable read = new TripleWritable();
+		for (int i = 0; i < 1000; i++) {
+			TripleWritable key = randomKey(random);
+			byte[] bytes = serialise(key);
+			in.reset(bytes, bytes.length);
+			read.readFields(in);
+			assertEquals(key, read);
+			assertEquals(0, read.compareTo(key));
+		}
+	}
+
+	@Test
+	public void testRawComparatorSameAsCompareTo() throws IOException {
+		Random random = new Random(11);
+		WritableComparator comparator = WritableComparator.get(TripleWritable.class);
+		for (int i = 0; i < 10000; i++) {
+			TripleWritable a = randomKey(random);
+			TripleWritable b = random.nextInt(5) == 0 ? a : randomKey(random);
+			byte[] bytesA = serialise(a);
+			byte[] bytesB = serialise(b);
+			// with something before the key, as in a sort buffer
+			byte[] padded = new byte[bytesB.length + 3];
+			System.arraycopy(bytesB, 0, padded, 3, bytesB.length);
+			int raw = comparator.compare(bytesA, 0, bytesA.length, padded, 3, bytesB.length);
+			assertEquals(a + " / " + b, Integer.signum(a.compareTo(b)), Integer.signum(raw));
+		}
+	}
+
+	@Test
+	public void testGet() {
+		Triple t = Triple.related("reference material", "guide");
+		TripleWritable key = new TripleWritable();
+		key.set(t);
+		assertEquals(t, key.get());
+	}
+}
@@ -0,0 +1,120 @@
+package org.liicornell.cfr.runner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class XmlTextTest {
+	private static final String[] PIECES = { "The ", "Secretary", " shall", ", and/or ", "(a)", "1.2", "&amp;", "&lt;",
+			"&gt;", "&quot;", "&apos;", "&#65;", "&#x263A;", "&#x1F600;", "<i>x</i>", "<b x=\"a>b\">x</b>", "<br/>",
+			"<!-- c > -->", "<?pi x?>", "<![CDATA[ <raw> & ]]>", "\r\n", "\r", "\n", "\t", "\u00e9", "\u2014", "\u00a7",
+			"\ud83d\ude00" };
+
+	/**
+	 * The character data as the StAX reader the runner used to read records with reports it.
+	 */
+	private static String stax(String document) throws XMLStreamException {
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(document));
+		StringBuilder text = new StringBuilder();
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamReader.CHARACTERS)
+				text.append(reader.getText());
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void testSameAsStax() throws XMLStreamException {
+		Random random = new Random(3);
+		XmlText xml = new XmlText();
+		Text record = new Text();
+		for (int trial = 0; trial < 2000; trial++) {
+			StringBuilder document = new StringBuilder("<text>");
+			for (int i = random.nextInt(40); i > 0; i--) {
+				document.append(PIECES[random.nextInt(PIECES.length)]);
+			}
+			document.append("</text>");
+			record.set(document.toString());
+			assertEquals(document.toString(), stax(document.toString()), xml.decode(record).toString());
+		}
+	}
+
+	@Test
+	public void testOutOfRange() {
+		// F4 90 80 80 would be U+110000
+		assertDecodedLikeText(0x41, 0xf4, 0x90, 0x80, 0x80, 0x42);
+		assertDecodedLikeText(0xf5, 0x80, 0x80, 0x80);
+		assertDecodedLikeText(0xf7, 0xbf, 0xbf, 0xbf);
+		assertDecodedLikeText(0xf4, 0x8f, 0xbf, 0xbf);
+		// references to characters XML doesn't allow are kept as they are
+		for (String reference : new String[] { "&#x110000;", "&#0;", "&#x0;", "&#1;", "&#xD800;", "&#xDFFF;",
+				"&#55296;", "&#xFFFE;" })
+			assertEquals(reference, new XmlText().decode(new Text(reference)).toString());
+		assertEquals("\t\uD7FF\uE000", new XmlText().decode(new Text("&#9;&#xD7FF;&#xE000;")).toString());
+	}
+
+	@Test
+	public void testOverlong() {
+		assertDecodedLikeText(0xc0, 0xaf);
+		assertDecodedLikeText(0xc1, 0xbf);
+		assertDecodedLikeText(0xe0, 0x80, 0xaf);
+		assertDecodedLikeText(0xf0, 0x80, 0x80, 0xaf);
+	}
+
+	@Test
+	public void testSurrogates() {
+		assertDecodedLikeText(0xed, 0xa0, 0x80);
+		assertDecodedLikeText(0xed, 0xbf, 0xbf);
+		assertDecodedLikeText(0xed, 0x9f, 0xbf);
+	}
+
+	@Test
+	public void testTruncated() {
+		assertDecodedLikeText(0xe2, 0x82);
+		assertDecodedLikeText(0xf0, 0x9f, 0x98, 0x41);
+		assertDecodedLikeText(0x80, 0xbf, 0x41);
+	}
+
+	@Test
+	public void testRandomBytes() {
+		Random random = new Random(5);
+		for (int trial = 0; trial < 20000; trial++) {
+			int[] bytes = new int[random.nextInt(12)];
+			for (int i = 0; i < bytes.length; i++) {
+				// no markup, references or carriage returns, which the decoder handles before UTF-8
+				do {
+					bytes[i] = random.nextBoolean() ? 0x80 + random.nextInt(0x80) : random.nextInt(0x80);
+				} while (bytes[i] == '<' || bytes[i] == '&' || bytes[i] == '\r');
+			}
+			assertDecodedLikeText(bytes);
+		}
+	}
+
+	@Test
+	public void testEncode() {
+		XmlText xml = new XmlText();
+		Text out = new Text();
+		String[] texts = { "", "plain", "\u00e9\u2014\u00a7", "\ud83d\ude00 and \ud83d", "\ude00 lone" };
+		for (String text : texts) {
+			xml.encode(text, out);
+			assertEquals(new Text(text), out);
+		}
+	}
+
+	private static void assertDecodedLikeText(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		Text record = new Text(bytes);
+		assertEquals(record.toString(), new XmlText().decode(record).toString());
+	}
+}
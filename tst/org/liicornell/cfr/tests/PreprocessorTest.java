@@ -0,0 +1,65 @@
+package org.liicornell.cfr.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.liicornell.cfr.preprocessor.Gazetteer;
+import org.liicornell.cfr.preprocessor.TextCleaner;
+
+public class PreprocessorTest {
+
+	/**
+	 * The regular expressions TextCleaner replaced, minus the agencies.
+	 */
+	private static String clean(String text) {
+		text = text.replaceAll("\\<.*?\\>", "");
+		text = text.replace("and/or", "or");
+		text = text.replace("and\\or", "or");
+		text = text.replaceAll("\n", "");
+		text = text.replaceAll("( )+", " ");
+		text = text.replaceAll("\u00df|\u00a7", "Section");
+		text = text.replaceAll(";|:", ".");
+		text = text.replaceAll("\\(.*\\)", "");
+		text = text.replaceAll("\\d+(\\.*)", "");
+		text = text.replaceAll("\u201c|\u201d", "\"");
+		text = text.replaceAll(", or", " or");
+		text = text.replaceAll(", and", " and");
+		return text;
+	}
+
+	@Test
+	public void testSameAsRegularExpressions() {
+		TextCleaner cleaner = new TextCleaner();
+		String[] texts = {
+				" Agencies of USDA shall comply with the time limits set forth in the FOIA and in this subpart, and for <aref type=\"USC\">\n    <subref title=\"5\" sect=\"552\">5 U.S.C. 552(a)(6)(B)</subref>\n   </aref> and \u00a7 1.16(b).",
+				"Records and/or information; see \u201cparagraph 3.2.\u201d (if any), or the Agency: <b",
+				"and\\and/or ((a) b) c) <x\n> <>end 12..34.x",
+		};
+		for (String text : texts) {
+			assertEquals(clean(text), cleaner.clean(text, null));
+		}
+	}
+
+	@Test
+	public void testAgencies() {
+		Map<String, String> names = new LinkedHashMap<String, String>();
+		names.put("Congress", "Agency");
+		names.put("Library of Congress", "Agency");
+		names.put("Paperwork Reduction Act", "Act");
+		TextCleaner cleaner = new TextCleaner();
+		assertEquals("The Agency and Agency, under the Act.",
+				cleaner.clean("The Library of Congress and Congress, under the Paperwork Reduction Act.", new Gazetteer(names)));
+	}
+
+	@Test
+	public void testLeftmostLongest() {
+		Gazetteer g = new Gazetteer(Arrays.asList("he", "she", "hers", "abcd", "bc"), "_");
+		assertEquals("u_rs", g.replace("ushers"));
+		assertEquals("_ a_e", g.replace("abcd abce"));
+		assertEquals(5, g.size());
+	}
+}
@@ -0,0 +1,67 @@
+package org.liicornell.cfr.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.liicornell.cfr.rdf.Triple;
+
+public class TripleTest {
+
+	/**
+	 * How Triple formatted terms before it had a fast path for ASCII.
+	 */
+	private static String format(String s) {
+		return s.replace('\u2014', '_').replaceAll(",|\\(|\\)", "").toLowerCase().trim();
+	}
+
+	@Test
+	public void testSameAsRegularExpressions() {
+		String[] terms = {
+				"reference material",
+				"Reference Material",
+				"  Food and Drug Administration  ",
+				"records, (including) information",
+				"(a)",
+				",()",
+				"\t\n USDA \r",
+				"",
+				" ",
+				"ALL CAPS, WITH COMMAS",
+				"Secretary\u2014Agency",
+				"caf\u00e9 (Caf\u00c9)",
+				"\u00a7 1.16(b)",
+				"\u0130stanbul",
+				"\u00a0non-breaking\u00a0",
+				"mixed\u2014Case, (and) \u00dcmlaut ",
+		};
+		for (String term : terms) {
+			assertEquals(term, format(term), Triple.format(term));
+		}
+	}
+
+	@Test
+	public void testRandomTerms() {
+		String alphabet = "aZ ,()\t\n.-_\u2014\u00e9\u00c9\u0130\u00a0";
+		Random random = new Random(13);
+		for (int trial = 0; trial < 10000; trial++) {
+			StringBuilder term = new StringBuilder();
+			for (int i = random.nextInt(12); i > 0; i--) {
+				// mostly ASCII, so that both paths are taken
+				int bound = random.nextInt(4) == 0 ? alphabet.length() : 10;
+				term.append(alphabet.charAt(random.nextInt(bound)));
+			}
+			assertEquals(term.toString(), format(term.toString()), Triple.format(term.toString()));
+		}
+	}
+
+	@Test
+	public void testFactoriesFormat() {
+		Triple t = Triple.lii(" Reference (Material) ", "Guide, A", "Shall Publish");
+		assertEquals("reference material", t.subject);
+		assertEquals("guide a", t.object);
+		assertEquals("shall publish", t.predicate);
+		assertEquals(Triple.related("reference material", "guide"), Triple.related("Reference Material ", "(Guide)"));
+	}
+}
@@ -0,0 +1,103 @@
+package org.liicornell.cfr.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.mahout.classifier.bayes.XmlInputFormat;
+import org.junit.Test;
+
+public class XmlInputFormatTest {
+
+	private static JobConf conf() {
+		JobConf conf = new JobConf();
+		conf.set(XmlInputFormat.START_TAG_KEY, "<text>");
+		conf.set(XmlInputFormat.END_TAG_KEY, "</text>");
+		return conf;
+	}
+
+	private static File write(String document) throws IOException {
+		File file = File.createTempFile("xmlinput", ".xml");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(document.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * @return the records of every split of the file, in order
+	 */
+	private static List<String> read(File file, long splitSize, JobConf conf) throws IOException {
+		List<String> records = new ArrayList<String>();
+		long size = file.length();
+		for (long start = 0; start < size; start += splitSize) {
+			FileSplit split = new FileSplit(new Path(file.getPath()), start, Math.min(splitSize, size - start),
+					(String[]) null);
+			RecordReader<Text, Text> reader = new XmlInputFormat().getRecordReader(split, conf, Reporter.NULL);
+			try {
+				Text key = reader.createKey();
+				Text value = reader.createValue();
+				while (reader.next(key, value)) {
+					records.add(value.toString());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		return records;
+	}
+
+	@Test
+	public void testPartialTagBeforeStartTag() throws IOException {
+		// "<te" looks like the start of a tag until the second '<'
+		File file = write("<doc><te<text>one</text><<text>two</tex</text>x</tex<text>three</text></doc>");
+		List<String> expected = Arrays.asList("<text>one</text>", "<text>two</tex</text>", "<text>three</text>");
+		for (long splitSize = 1; splitSize <= file.length(); splitSize++) {
+			assertEquals("split size " + splitSize, expected, read(file, splitSize, conf()));
+		}
+	}
+
+	@Test
+	public void testEveryRecordOnceWhateverTheSplits() throws IOException {
+		Random random = new Random(7);
+		JobConf conf = conf();
+		for (int trial = 0; trial < 50; trial++) {
+			StringBuilder document = new StringBuilder("<doc>");
+			List<String> expected = new ArrayList<String>();
+			for (int i = random.nextInt(50); i > 0; i--) {
+				document.append(random.nextBoolean() ? "<<tex<te" : "x</tex");
+				StringBuilder body = new StringBuilder();
+				// now and then a record longer than the reader's buffer
+				int length = random.nextInt(random.nextInt(10) == 0 ? 200000 : 100);
+				for (int k = 0; k < length; k++) {
+					body.append((char) ('a' + random.nextInt(3)));
+				}
+				String record = "<text>" + body + (random.nextBoolean() ? "</tex<" : "") + "</text>";
+				expected.add(record);
+				document.append(record);
+			}
+			document.append("</doc>");
+			File file = write(document.toString());
+			long splitSize = 1 + random.nextInt((int) Math.min(file.length(), 300000));
+			assertEquals("split size " + splitSize, expected, read(file, splitSize, conf));
+			file.delete();
+		}
+	}
+}